@@ -0,0 +1,209 @@
+package org.cis1200.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard representation of the playable squares of the board.
+ *
+ * Only the 50 dark squares ((row + col) odd) can hold a piece, so the
+ * position is packed into three longs: one mask per player and one mask
+ * marking which pieces are kings. Squares are numbered row by row, five per
+ * row, with an unused "ghost" bit after every second row (bits 10, 21, 32
+ * and 43). With that padding every diagonal step is a shift by 5 or 6 bits,
+ * and a step off the left or right edge lands on a ghost bit instead of
+ * wrapping around to the other side of the board.
+ */
+class BitBoard {
+    static final int SIZE = 54;
+    static final int NONE = -1;
+
+    /**
+     * Mask of the 50 playable bits (the ghost bits are excluded).
+     */
+    static final long PLAYABLE;
+
+    private static final int[] SQUARES = new int[100];
+    private static final int[] ROWS = new int[SIZE];
+    private static final int[] COLS = new int[SIZE];
+
+    static {
+        long playable = 0L;
+        Arrays.fill(SQUARES, NONE);
+        Arrays.fill(ROWS, NONE);
+        Arrays.fill(COLS, NONE);
+        for (int row = 0; row < 10; row++) {
+            for (int col = 0; col < 10; col++) {
+                if ((row + col) % 2 == 1) {
+                    int square = row * 5 + col / 2 + row / 2;
+                    SQUARES[row * 10 + col] = square;
+                    ROWS[square] = row;
+                    COLS[square] = col;
+                    playable |= 1L << square;
+                }
+            }
+        }
+        PLAYABLE = playable;
+    }
+
+    // pieces of player 1 (red, color 1)
+    long player1Pieces;
+    // pieces of player 2 (black, color 2)
+    long player2Pieces;
+    // pieces of either player that are kings
+    long kings;
+
+    /**
+     * Returns the bit index of a board square.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     * @return The bit index, or NONE for a light (unplayable) square
+     */
+    static int square(int row, int col) {
+        return SQUARES[row * 10 + col];
+    }
+
+    /**
+     * Returns whether a bit index is a dark square of the board.
+     *
+     * @param square The bit index, possibly out of range
+     * @return True for a playable square
+     */
+    static boolean isPlayable(int square) {
+        return square >= 0 && square < SIZE && (PLAYABLE >>> square & 1) != 0;
+    }
+
+    static int row(int square) {
+        return ROWS[square];
+    }
+
+    static int col(int square) {
+        return COLS[square];
+    }
+
+    /**
+     * Returns the bit index of a square given in standard draughts numbering,
+     * where 1 is the top-left playable square and 50 the bottom-right one.
+     *
+     * @param number The square number, 1 to 50
+     * @return The bit index
+     */
+    static int fromNumber(int number) {
+        return (number - 1) + (number - 1) / 10;
+    }
+
+    /**
+     * Returns the standard draughts number (1 to 50) of a bit index.
+     *
+     * @param square The bit index
+     * @return The square number
+     */
+    static int number(int square) {
+        return square - square / 11 + 1;
+    }
+
+    /**
+     * Returns a copy of this bitboard.
+     *
+     * @return The copy
+     */
+    BitBoard copy() {
+        BitBoard copy = new BitBoard();
+        copy.player1Pieces = player1Pieces;
+        copy.player2Pieces = player2Pieces;
+        copy.kings = kings;
+        return copy;
+    }
+
+    long occupied() {
+        return player1Pieces | player2Pieces;
+    }
+
+    long empty() {
+        return PLAYABLE & ~(player1Pieces | player2Pieces);
+    }
+
+    /**
+     * Returns the pieces of one player.
+     *
+     * @param color The color of the player (1 or 2)
+     * @return The mask of that player's pieces
+     */
+    long pieces(int color) {
+        return color == 1 ? player1Pieces : player2Pieces;
+    }
+
+    /**
+     * Returns the color of the piece on a square.
+     *
+     * @param square The bit index of the square
+     * @return 1 or 2, or 0 if the square is empty
+     */
+    int colorAt(int square) {
+        long bit = 1L << square;
+        if ((player1Pieces & bit) != 0) {
+            return 1;
+        }
+        if ((player2Pieces & bit) != 0) {
+            return 2;
+        }
+        return 0;
+    }
+
+    boolean isKing(int square) {
+        return (kings & (1L << square)) != 0;
+    }
+
+    /**
+     * Places a piece on a square, replacing whatever was there.
+     *
+     * @param square The bit index of the square
+     * @param color The color of the piece
+     * @param king Whether the piece is a king
+     */
+    void put(int square, int color, boolean king) {
+        long bit = 1L << square;
+        if (color == 1) {
+            player1Pieces |= bit;
+            player2Pieces &= ~bit;
+        } else {
+            player2Pieces |= bit;
+            player1Pieces &= ~bit;
+        }
+        if (king) {
+            kings |= bit;
+        } else {
+            kings &= ~bit;
+        }
+    }
+
+    /**
+     * Removes the piece on a square, if any.
+     *
+     * @param square The bit index of the square
+     */
+    void remove(int square) {
+        long mask = ~(1L << square);
+        player1Pieces &= mask;
+        player2Pieces &= mask;
+        kings &= mask;
+    }
+
+    /**
+     * Moves the piece on one square to another, keeping its color and rank.
+     *
+     * @param from The bit index the piece is on
+     * @param to The bit index to move it to
+     */
+    void move(int from, int to) {
+        long fromTo = (1L << from) | (1L << to);
+        if ((player1Pieces & (1L << from)) != 0) {
+            player1Pieces ^= fromTo;
+        } else {
+            player2Pieces ^= fromTo;
+        }
+        if ((kings & (1L << from)) != 0) {
+            kings ^= fromTo;
+        }
+    }
+}
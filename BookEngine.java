@@ -0,0 +1,73 @@
+package org.cis1200.checkers;
+
+import java.io.IOException;
+
+/**
+ * Plays from an opening book while the position is in it and hands over to
+ * another engine once it is not.
+ */
+class BookEngine implements Engine {
+    private final OpeningBook book;
+    private final Engine engine;
+    private boolean fromBook;
+
+    /**
+     * Creates an engine consulting a book before searching.
+     *
+     * @param book The opening book
+     * @param engine The engine searching positions out of the book
+     */
+    BookEngine(OpeningBook book, Engine engine) {
+        this.book = book;
+        this.engine = engine;
+    }
+
+    @Override
+    public int findBestMove(Checkers game) {
+        int move = book.probe(game);
+        fromBook = move != Move.NONE;
+        return fromBook ? move : engine.findBestMove(game);
+    }
+
+    /**
+     * @return Whether the last move came from the book
+     */
+    boolean isBookMove() {
+        return fromBook;
+    }
+
+    @Override
+    public long getNodes() {
+        return fromBook ? 0 : engine.getNodes();
+    }
+
+    @Override
+    public int getDepth() {
+        return fromBook ? 0 : engine.getDepth();
+    }
+
+    @Override
+    public int getScore() {
+        return fromBook ? 0 : engine.getScore();
+    }
+
+    @Override
+    public void abort() {
+        engine.abort();
+    }
+
+    @Override
+    public void clearAbort() {
+        engine.clearAbort();
+    }
+
+    @Override
+    public void shutdown() {
+        engine.shutdown();
+        try {
+            book.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
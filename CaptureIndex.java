@@ -0,0 +1,100 @@
+package org.cis1200.checkers;
+
+/**
+ * Remembers which pieces can capture, and updates only the pieces a change
+ * of the board can affect.
+ *
+ * Whether a piece can capture depends only on the squares of its two
+ * diagonals: for a soldier the two squares next to it in each direction,
+ * for a flying king the whole diagonal. So when some squares change, only
+ * soldiers within two diagonal steps of a changed square and kings on a
+ * diagonal through one need to be looked at again. The index keeps a copy
+ * of the bitboards it last saw and finds the changed squares by comparing
+ * them with the current ones, so it follows every way the board can change
+ * (moves, undo, editing, loading) without being told about each.
+ */
+final class CaptureIndex {
+    // both diagonals through each square, the square included
+    private static final long[] DIAGONALS = new long[BitBoard.SIZE];
+    // squares at most two diagonal steps from each square, the square included
+    private static final long[] NEAR = new long[BitBoard.SIZE];
+
+    static {
+        for (int square = 0; square < BitBoard.SIZE; square++) {
+            if (!MoveGenerator.isSquare(square)) {
+                continue;
+            }
+            DIAGONALS[square] = NEAR[square] = 1L << square;
+            for (int direction : MoveGenerator.DIRECTIONS) {
+                int steps = 0;
+                for (int to = square + direction; MoveGenerator.isSquare(to); to += direction) {
+                    DIAGONALS[square] |= 1L << to;
+                    if (++steps <= 2) {
+                        NEAR[square] |= 1L << to;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean valid;
+    private long player1Pieces;
+    private long player2Pieces;
+    private long kings;
+    // pieces of each color that can capture, indexed by color
+    private final long[] capturers = new long[3];
+
+    /**
+     * Returns the pieces of a color that can capture.
+     *
+     * @param position The current position
+     * @param color The color of the pieces
+     * @return The squares of the pieces
+     */
+    long capturers(BitBoard position, int color) {
+        refresh(position);
+        return capturers[color];
+    }
+
+    /**
+     * Forgets everything, so the next query looks at every piece.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    private void refresh(BitBoard position) {
+        long changed = (player1Pieces ^ position.player1Pieces) | (player2Pieces ^ position.player2Pieces)
+                | (kings ^ position.kings);
+        if (valid && changed == 0) {
+            return;
+        }
+        long occupied = position.occupied();
+        long affected;
+        if (valid) {
+            long near = 0;
+            long diagonals = 0;
+            for (long squares = changed; squares != 0; squares &= squares - 1) {
+                int square = Long.numberOfTrailingZeros(squares);
+                near |= NEAR[square];
+                diagonals |= DIAGONALS[square];
+            }
+            affected = (near & occupied & ~position.kings) | (diagonals & position.kings);
+        } else {
+            affected = occupied;
+        }
+        capturers[1] &= position.player1Pieces & ~affected;
+        capturers[2] &= position.player2Pieces & ~affected;
+        for (long squares = affected; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            int color = position.colorAt(square);
+            if (MoveGenerator.canCapture(position, square, color)) {
+                capturers[color] |= 1L << square;
+            }
+        }
+        player1Pieces = position.player1Pieces;
+        player2Pieces = position.player2Pieces;
+        kings = position.kings;
+        valid = true;
+    }
+}
@@ -4,7 +4,12 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 class CheckersBoard extends JPanel {
 
@@ -13,8 +18,33 @@ class CheckersBoard extends JPanel {
     private static final Color ACTIVE_SQUARE_COLOR = Color.WHITE;
     private static final Color INACTIVE_SQUARE_COLOR = new Color(139, 69, 19); // Brown
     private static final Color HIGHLIGHT_COLOR = Color.YELLOW;
+    // pause before each AI move so the player can follow multi-jumps
+    private static final int AI_DELAY_MILLIS = 100;
+    private static final long JOURNAL_COMMIT_MILLIS = 200;
+    private static final int JOURNAL_SNAPSHOT_INTERVAL = 256;
+    private static final int BOOK_MIN_GAMES = 2;
+    private static final int TABLEBASE_CACHE_PAGES = 4096;
 
     private Checkers game;
+    // crash-safe record of the game, enabled with -Dcheckers.journal=<directory>
+    private GameJournal journal;
+    // the AI engine, -Dcheckers.engine=mcts for Monte Carlo tree search,
+    // with the number of threads set by -Dcheckers.threads=N, an opening
+    // book read from -Dcheckers.book=<file>, endgame tables from
+    // -Dcheckers.tablebase=<directory>, and either tuned evaluation weights
+    // from -Dcheckers.weights=<file> or a neural network evaluation from
+    // -Dcheckers.nnue=<weights file>
+    private final Engine engine = createEngine(
+            Integer.getInteger("checkers.threads", Runtime.getRuntime().availableProcessors()));
+    // the AI thinks on this thread, one turn at a time, on a copy of the game
+    private final ExecutorService aiExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "checkers-ai");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> aiTask;
+    // bumped on reset, undo and load so moves of an abandoned AI turn are dropped
+    private volatile int aiGeneration;
     private int selectedRow = -1;
     private int selectedCol = -1;
 
@@ -22,12 +52,63 @@ class CheckersBoard extends JPanel {
 
     public CheckersBoard(JLabel statusInit) {
         game = new Checkers();
+        String journalDirectory = System.getProperty("checkers.journal");
+        if (journalDirectory != null) {
+            try {
+                journal = new GameJournal(Path.of(journalDirectory), JOURNAL_COMMIT_MILLIS,
+                        JOURNAL_SNAPSHOT_INTERVAL);
+                game = journal.recover();
+            } catch (IOException e) {
+                e.printStackTrace();
+                journal = null;
+            }
+        }
         setPreferredSize(new Dimension(BOARD_SIZE * SQUARE_SIZE, BOARD_SIZE * SQUARE_SIZE));
         addMouseListener(new AIClickHandler());
         status = statusInit;
         setLayout(new BorderLayout());
     }
 
+    private static Engine createEngine(int threads) {
+        Engine engine;
+        if ("mcts".equals(System.getProperty("checkers.engine"))) {
+            engine = new MonteCarloSearch(threads, 100, Long.MAX_VALUE, MonteCarloSearch.DEFAULT_CAPACITY);
+        } else {
+            Supplier<Evaluator> evaluators = HandcraftedEvaluator::new;
+            String weights = System.getProperty("checkers.weights");
+            String network = System.getProperty("checkers.nnue");
+            try {
+                if (network != null) {
+                    evaluators = NnueNetwork.load(Path.of(network))::newEvaluator;
+                } else if (weights != null) {
+                    int[] tuned = HandcraftedEvaluator.readWeights(Path.of(weights));
+                    evaluators = () -> new HandcraftedEvaluator(tuned);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            ParallelSearch search = new ParallelSearch(threads, evaluators);
+            String tablebase = System.getProperty("checkers.tablebase");
+            if (tablebase != null) {
+                try {
+                    search.setTablebase(new Tablebase(Path.of(tablebase), TABLEBASE_CACHE_PAGES));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            engine = search;
+        }
+        String book = System.getProperty("checkers.book");
+        if (book != null) {
+            try {
+                engine = new BookEngine(new OpeningBook(Path.of(book), BOOK_MIN_GAMES), engine);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return engine;
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -73,11 +154,12 @@ class CheckersBoard extends JPanel {
     }
 
     private void highlightJumps(Graphics g) {
-        List<String> squares = game.getAllPossiblePositions();
-        if (!squares.isEmpty()) {
-            for (String square : squares) {
-                int row = Integer.parseInt(square.substring(0, 1));
-                int col = Integer.parseInt(square.substring(1, 2));
+        long squares = game.getPossibleSquares();
+        if (squares != 0) {
+            for (; squares != 0; squares &= squares - 1) {
+                int square = Long.numberOfTrailingZeros(squares);
+                int row = BitBoard.row(square);
+                int col = BitBoard.col(square);
                 g.setColor(HIGHLIGHT_COLOR);
                 g.drawRect(col * SQUARE_SIZE, row * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
                 // Draw a thick border around the square
@@ -90,7 +172,11 @@ class CheckersBoard extends JPanel {
      * (Re-)sets the game to its initial state.
      */
     public void reset() {
+        cancelAI();
         game = new Checkers();
+        if (journal != null) {
+            journal.attach(game);
+        }
         selectedRow = -1;
         selectedCol = -1;
         status.setText("Player 1's Turn");
@@ -98,6 +184,7 @@ class CheckersBoard extends JPanel {
     }
 
     public void undo() {
+        cancelAI();
         game.undo();
         updateBoard();
     }
@@ -116,6 +203,7 @@ class CheckersBoard extends JPanel {
             if (option == JOptionPane.YES_OPTION) {
                 System.exit(0);
             } else {
+                cancelAI();
                 game.loadGame();
                 updateBoard();
             }
@@ -125,6 +213,7 @@ class CheckersBoard extends JPanel {
     }
 
     public void loadGame() {
+        cancelAI();
         if (game.loadGame()) {
             updateBoard();
         } else {
@@ -136,6 +225,102 @@ class CheckersBoard extends JPanel {
         repaint();
     }
 
+    /**
+     * Starts the AI's turn in the background unless it is already running.
+     */
+    private void startAI() {
+        if (aiTask != null && !aiTask.isDone()) {
+            return;
+        }
+        int generation = aiGeneration;
+        Checkers position = new Checkers(game);
+        engine.clearAbort();
+        aiTask = aiExecutor.submit(() -> playAI(position, generation));
+    }
+
+    /**
+     * Abandons the AI's current turn. A search already running is aborted
+     * and its moves are not played.
+     */
+    private void cancelAI() {
+        aiGeneration++;
+        if (aiTask != null) {
+            engine.abort();
+            aiTask.cancel(false);
+            aiTask = null;
+        }
+    }
+
+    /**
+     * Plays the AI's turn on the AI thread, handing each move (each hop of a
+     * multi-jump) to the event dispatch thread as soon as it is found.
+     */
+    private void playAI(Checkers position, int generation) {
+        while (!position.player1 && generation == aiGeneration) {
+            try {
+                Thread.sleep(AI_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (generation != aiGeneration) {
+                return;
+            }
+            int move = engine.findBestMove(position);
+            SwingUtilities.invokeLater(() -> applyAIMove(move, generation));
+            if (move == Move.NONE) {
+                return;
+            }
+            position.makeMove(move);
+        }
+    }
+
+    private void applyAIMove(int move, int generation) {
+        if (generation != aiGeneration) {
+            return;
+        }
+        // with no move the AI has lost, which checkGameOver reports
+        if (move != Move.NONE) {
+            int from = Move.from(move);
+            int to = Move.to(move);
+            game.movePiece(BitBoard.row(from), BitBoard.col(from), BitBoard.row(to), BitBoard.col(to));
+            game.currentPlayerCanJumpPiece();
+        }
+        status.setText(getStatus());
+        updateBoard();
+        if (game.player1 || game.getResult().isOver()) {
+            checkGameOver();
+        }
+    }
+
+    private void checkGameOver() {
+        GameResult result = game.getResult();
+        if (result == GameResult.PLAYER1_WINS) {
+            int option = JOptionPane.showConfirmDialog(CheckersBoard.this, "Player 1 wins!\nWould you like to play again?", "Game Over", JOptionPane.YES_NO_OPTION);
+            if (option == JOptionPane.YES_OPTION) {
+                reset();
+            } else {
+                System.exit(0);
+            }
+        } else if (result == GameResult.PLAYER2_WINS) {
+            int option = JOptionPane.showConfirmDialog(CheckersBoard.this, "AI wins!\nWould you like to play again?", "Game Over", JOptionPane.YES_NO_OPTION);
+            if (option == JOptionPane.YES_OPTION) {
+                reset();
+                status.setText("Player 1's Turn");
+            } else {
+                System.exit(0);
+            }
+        } else if (result == GameResult.DRAW) {
+            int option = JOptionPane.showConfirmDialog(CheckersBoard.this, "Draw!\nWould you like to play again?", "Game Over", JOptionPane.YES_NO_OPTION);
+            if (option == JOptionPane.YES_OPTION) {
+                reset();
+                status.setText("Player 1's Turn");
+            } else {
+                System.exit(0);
+            }
+        }
+    }
+
     private class ClickHandler extends MouseAdapter {
 
         @Override
@@ -215,37 +400,10 @@ class CheckersBoard extends JPanel {
                 }
             }
             updateBoard();
-            while (!game.player1 && game.checkWinner() == 0) {
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
-                game.randomAI();
-                // 100ms delay
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException ex) {
-                    Thread.currentThread().interrupt();
-                }
-                game.currentPlayerCanJumpPiece();
-                updateBoard();
-            }
-            if (game.checkWinner() == 1) {
-                int option = JOptionPane.showConfirmDialog(CheckersBoard.this, "Player 1 wins!\nWould you like to play again?", "Game Over", JOptionPane.YES_NO_OPTION);
-                if (option == JOptionPane.YES_OPTION) {
-                    reset();
-                } else {
-                    System.exit(0);
-                }
-            } else if (game.checkWinner() == 2) {
-                int option = JOptionPane.showConfirmDialog(CheckersBoard.this, "AI wins!\nWould you like to play again?", "Game Over", JOptionPane.YES_NO_OPTION);
-                if (option == JOptionPane.YES_OPTION) {
-                    reset();
-                    status.setText("Player 1's Turn");
-                } else {
-                    System.exit(0);
-                }
+            if (!game.player1 && !game.getResult().isOver()) {
+                startAI();
+            } else {
+                checkGameOver();
             }
         }
     }
@@ -0,0 +1,51 @@
+package org.cis1200.checkers;
+
+/**
+ * A move-choosing engine for the AI player.
+ */
+interface Engine {
+    /**
+     * Searches the current position and returns the best move for the
+     * player to move.
+     *
+     * @param game The game to search, restored before returning
+     * @return The best move, or Move.NONE if the player has no legal move
+     */
+    int findBestMove(Checkers game);
+
+    /**
+     * @return The number of nodes visited by the last search
+     */
+    long getNodes();
+
+    /**
+     * @return The deepest iteration completed by the last search
+     */
+    int getDepth();
+
+    /**
+     * @return The score of the last search, from the point of view of the
+     *         player to move
+     */
+    int getScore();
+
+    /**
+     * Makes a running search return as soon as it next checks its limits,
+     * and any search started afterwards return at once, until clearAbort.
+     * The move such a search returns may be a poor one.
+     */
+    void abort();
+
+    /**
+     * Lets searches run normally again after abort. The caller does this
+     * before starting a turn, so an abort of that turn is never lost.
+     */
+    void clearAbort();
+
+    /**
+     * Releases any threads the engine keeps. The engine must not be used
+     * afterwards.
+     */
+    default void shutdown() {
+    }
+}
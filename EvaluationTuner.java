@@ -0,0 +1,255 @@
+package org.cis1200.checkers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Fits the weights of HandcraftedEvaluator to game results (Texel's
+ * method).
+ *
+ * Every quiet position of the games (the start of a turn, with no capture
+ * to make, past the first few plies) is labelled with the result of its
+ * game. The score of a position maps to an expected result through a
+ * logistic curve, 1 / (1 + 10^(-k * score / 400)); k is first fitted to
+ * the starting weights, and the weights are then moved by Adam along the
+ * gradient of the mean squared difference between expected and actual
+ * results.
+ *
+ * A position takes three longs: player 1's pieces with the side to move in
+ * the top bit, player 2's pieces with the result in the top bits, and the
+ * kings. Since the score is linear in the weights, the terms of a position
+ * are counted again at each step instead of being stored. The error and the
+ * gradient are summed over batches of positions on a fork-join pool.
+ *
+ * Usage: EvaluationTuner games.pdn weights.txt [iterations] [threads]. The
+ * tuning starts from the weights file if it exists and writes the result
+ * back to it.
+ */
+public class EvaluationTuner {
+    private static final int LONGS = 3;
+    private static final int BATCH = 1 << 14;
+    // plies skipped at the start of every game, mostly book moves
+    private static final int OPENING_PLIES = 8;
+    private static final long SIDE_BIT = 1L << 63;
+    private static final int RESULT_SHIFT = 60;
+    private static final double LEARNING_RATE = 1.0;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+
+    private final ForkJoinPool pool;
+    private long[] positions = new long[LONGS << 16];
+    private int size;
+
+    /**
+     * Creates a tuner without positions.
+     *
+     * @param threads The number of threads summing the error
+     */
+    EvaluationTuner(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: EvaluationTuner games.pdn weights.txt [iterations] [threads]");
+            System.exit(1);
+        }
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Path weightsFile = Path.of(args[1]);
+        int[] weights = Files.exists(weightsFile) ? HandcraftedEvaluator.readWeights(weightsFile)
+                : HandcraftedEvaluator.defaultWeights();
+
+        EvaluationTuner tuner = new EvaluationTuner(threads);
+        long start = System.nanoTime();
+        long read;
+        try (Reader in = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.ISO_8859_1)) {
+            read = PdnReader.readAll(in, threads, tuner::add, e -> System.err.println(e.getMessage()));
+        }
+        System.out.printf("%d games, %d positions in %.3f s%n", read, tuner.size(), (System.nanoTime() - start) / 1e9);
+        if (tuner.size() == 0) {
+            System.exit(1);
+        }
+
+        double k = tuner.fitScale(weights);
+        System.out.printf("k %.4f, error %.6f%n", k, tuner.error(weights, k));
+        int[] tuned = tuner.tune(weights, k, iterations, true);
+        System.out.printf("error %.6f%n", tuner.error(tuned, k));
+        HandcraftedEvaluator.writeWeights(weightsFile, tuned);
+        for (int w = 0; w < HandcraftedEvaluator.WEIGHTS; w++) {
+            System.out.printf("%-14s %6d -> %6d%n", HandcraftedEvaluator.WEIGHT_NAMES.get(w), weights[w], tuned[w]);
+        }
+        tuner.pool.shutdown();
+    }
+
+    /**
+     * Adds the quiet positions of a game with a known result. Safe to call
+     * from several threads.
+     *
+     * @param game The game
+     */
+    void add(PdnGame game) {
+        Integer score = game.getScore();
+        if (score == null) {
+            return;
+        }
+        long result = (long) (score + 1) << RESULT_SHIFT;
+        Checkers board = game.startPosition();
+        int[] hops = game.getMoves();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long[] quiet = new long[LONGS * hops.length];
+        int length = 0;
+        for (int k = 0; k < hops.length; k++) {
+            // captures are mandatory, so the first move tells whether there is one
+            if (k >= OPENING_PLIES && board.getJumper() == BitBoard.NONE && board.generateMoves(moves) > 0
+                    && !Move.isCapture(moves[0])) {
+                BitBoard position = board.getPosition();
+                quiet[length++] = position.player1Pieces | (board.player1 ? SIDE_BIT : 0);
+                quiet[length++] = position.player2Pieces | result;
+                quiet[length++] = position.kings;
+            }
+            board.makeMove(hops[k]);
+        }
+        synchronized (this) {
+            while (LONGS * size + length > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            System.arraycopy(quiet, 0, positions, LONGS * size, length);
+            size += length / LONGS;
+        }
+    }
+
+    /**
+     * @return The number of positions
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the mean squared difference between the expected and actual
+     * results.
+     *
+     * @param weights The weights
+     * @param k The scale of the logistic curve
+     * @return The error
+     */
+    double error(int[] weights, double k) {
+        double[] w = Arrays.stream(weights).asDoubleStream().toArray();
+        return sum(w, k, false)[HandcraftedEvaluator.WEIGHTS];
+    }
+
+    /**
+     * Finds the scale of the logistic curve that best fits the results with
+     * the given weights, by golden-section search.
+     *
+     * @param weights The weights
+     * @return The scale
+     */
+    double fitScale(int[] weights) {
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        double low = 0.01;
+        double high = 10;
+        while (high - low > 1e-4) {
+            double a = high - ratio * (high - low);
+            double b = low + ratio * (high - low);
+            if (error(weights, a) < error(weights, b)) {
+                high = b;
+            } else {
+                low = a;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Moves the weights down the gradient of the error with Adam.
+     *
+     * @param weights The starting weights
+     * @param k The scale of the logistic curve
+     * @param iterations The number of gradient steps
+     * @param verbose Whether to print the error every few steps
+     * @return The tuned weights, rounded
+     */
+    int[] tune(int[] weights, double k, int iterations, boolean verbose) {
+        int n = HandcraftedEvaluator.WEIGHTS;
+        double[] w = Arrays.stream(weights).asDoubleStream().toArray();
+        double[] m = new double[n];
+        double[] v = new double[n];
+        for (int step = 1; step <= iterations; step++) {
+            double[] sums = sum(w, k, true);
+            for (int i = 0; i < n; i++) {
+                double g = sums[i];
+                m[i] = BETA1 * m[i] + (1 - BETA1) * g;
+                v[i] = BETA2 * v[i] + (1 - BETA2) * g * g;
+                double mHat = m[i] / (1 - Math.pow(BETA1, step));
+                double vHat = v[i] / (1 - Math.pow(BETA2, step));
+                w[i] -= LEARNING_RATE * mHat / (Math.sqrt(vHat) + 1e-12);
+            }
+            if (verbose && (step % 50 == 0 || step == iterations)) {
+                System.out.printf("step %d, error %.6f%n", step, sums[n]);
+            }
+        }
+        return Arrays.stream(w).mapToInt(x -> (int) Math.round(x)).toArray();
+    }
+
+    /**
+     * Sums the error, and optionally its gradient, over all positions.
+     *
+     * @return The gradient of the mean error for each weight (zero when not
+     *         asked for), then the mean error
+     */
+    private double[] sum(double[] weights, double k, boolean gradient) {
+        int n = HandcraftedEvaluator.WEIGHTS;
+        int count;
+        long[] data;
+        synchronized (this) {
+            count = size;
+            data = positions;
+        }
+        double scale = k * Math.log(10) / 400;
+        double[] total = pool.submit(() -> IntStream.range(0, (count + BATCH - 1) / BATCH).parallel()
+                .mapToObj(batch -> {
+                    double[] sums = new double[n + 1];
+                    int[] terms = new int[n];
+                    for (int p = batch * BATCH; p < Math.min(count, (batch + 1) * BATCH); p++) {
+                        long player1 = data[LONGS * p];
+                        long player2 = data[LONGS * p + 1];
+                        HandcraftedEvaluator.countTerms(player1 & ~SIDE_BIT, player2 & ~(3L << RESULT_SHIFT),
+                                data[LONGS * p + 2], player1 < 0, terms);
+                        double score = 0;
+                        for (int i = 0; i < n; i++) {
+                            score += weights[i] * terms[i];
+                        }
+                        double expected = 1 / (1 + Math.exp(-scale * score));
+                        double actual = (player2 >>> RESULT_SHIFT) / 2.0;
+                        double difference = expected - actual;
+                        sums[n] += difference * difference;
+                        if (gradient) {
+                            double slope = 2 * difference * expected * (1 - expected) * scale;
+                            for (int i = 0; i < n; i++) {
+                                sums[i] += slope * terms[i];
+                            }
+                        }
+                    }
+                    return sums;
+                })
+                .reduce(new double[n + 1], (a, b) -> {
+                    double[] sums = new double[n + 1];
+                    for (int i = 0; i <= n; i++) {
+                        sums[i] = a[i] + b[i];
+                    }
+                    return sums;
+                })).join();
+        for (int i = 0; i <= n; i++) {
+            total[i] /= count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,89 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationTunerTest {
+    /**
+     * Plays a random game to its end and returns it with its result.
+     */
+    private static PdnGame randomGame(SplittableRandom random) {
+        Checkers game = new Checkers();
+        int[] moves = new int[400];
+        int size = 0;
+        for (int move = game.randomMove(random); move != Move.NONE && size < moves.length;
+                move = game.randomMove(random)) {
+            game.makeMove(move);
+            moves[size++] = move;
+        }
+        GameResult result = game.getResult();
+        String text = result == GameResult.PLAYER1_WINS ? PdnGame.WHITE_WINS
+                : result == GameResult.PLAYER2_WINS ? PdnGame.BLACK_WINS : PdnGame.DRAW;
+        return new PdnGame(Map.of(), Arrays.copyOf(moves, size), text);
+    }
+
+    @Test
+    void testTermsMatchEvaluation() {
+        // the tuner's linear model must be the evaluator's score
+        int[] weights = HandcraftedEvaluator.defaultWeights();
+        HandcraftedEvaluator evaluator = new HandcraftedEvaluator(weights);
+        int[] terms = new int[HandcraftedEvaluator.WEIGHTS];
+        SplittableRandom random = new SplittableRandom(3);
+        Checkers game = new Checkers();
+        for (int move = game.randomMove(random); move != Move.NONE; move = game.randomMove(random)) {
+            BitBoard position = game.getPosition();
+            evaluator.reset(position);
+            HandcraftedEvaluator.countTerms(position.player1Pieces, position.player2Pieces, position.kings,
+                    game.player1, terms);
+            int score = 0;
+            for (int w = 0; w < weights.length; w++) {
+                score += weights[w] * terms[w];
+            }
+            assertEquals(game.player1 ? score : -score, evaluator.evaluate(game.player1));
+            game.makeMove(move);
+        }
+    }
+
+    @Test
+    void testTuningLowersError() {
+        EvaluationTuner tuner = new EvaluationTuner(2);
+        SplittableRandom random = new SplittableRandom(5);
+        for (int k = 0; k < 200; k++) {
+            tuner.add(randomGame(random));
+        }
+        tuner.add(new PdnGame(Map.of(), new int[0], PdnGame.UNKNOWN));
+        assertTrue(tuner.size() > 1000);
+
+        int[] weights = HandcraftedEvaluator.defaultWeights();
+        double k = tuner.fitScale(weights);
+        assertTrue(k > 0.01 && k < 10);
+        double before = tuner.error(weights, k);
+        assertTrue(before < tuner.error(weights, k * 2) && before < tuner.error(weights, k / 2));
+        int[] tuned = tuner.tune(weights, k, 50, false);
+        assertTrue(tuner.error(tuned, k) < before);
+    }
+
+    @Test
+    void testWeightsFile() throws IOException {
+        Path file = Files.createTempFile("weights", ".txt");
+        file.toFile().deleteOnExit();
+        int[] weights = HandcraftedEvaluator.defaultWeights();
+        weights[HandcraftedEvaluator.KING] = 250;
+        HandcraftedEvaluator.writeWeights(file, weights);
+        assertArrayEquals(weights, HandcraftedEvaluator.readWeights(file));
+
+        Files.writeString(file, "# partial\nking 280\n");
+        assertEquals(280, HandcraftedEvaluator.readWeights(file)[HandcraftedEvaluator.KING]);
+        assertEquals(HandcraftedEvaluator.defaultWeights()[HandcraftedEvaluator.SOLDIER],
+                HandcraftedEvaluator.readWeights(file)[HandcraftedEvaluator.SOLDIER]);
+        Files.writeString(file, "queen 900\n");
+        assertThrows(IOException.class, () -> HandcraftedEvaluator.readWeights(file));
+    }
+}
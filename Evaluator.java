@@ -0,0 +1,81 @@
+package org.cis1200.checkers;
+
+/**
+ * A position evaluation for the search, kept up to date move by move.
+ *
+ * The search calls reset once on the root position and then makeMove and
+ * unmakeMove around every move it plays, so an implementation only has to
+ * account for the pieces a move adds and removes instead of looking at the
+ * whole board at every leaf. The default methods turn a move into those
+ * piece changes.
+ */
+interface Evaluator {
+    /**
+     * Recomputes the evaluation of a position from scratch.
+     *
+     * @param position The position
+     */
+    void reset(BitBoard position);
+
+    /**
+     * Accounts for a piece appearing on a square.
+     *
+     * @param square The bit index of the square
+     * @param color The color of the piece
+     * @param king Whether the piece is a king
+     */
+    void add(int square, int color, boolean king);
+
+    /**
+     * Accounts for a piece leaving a square.
+     *
+     * @param square The bit index of the square
+     * @param color The color of the piece
+     * @param king Whether the piece is a king
+     */
+    void remove(int square, int color, boolean king);
+
+    /**
+     * Returns the score of the position tracked so far.
+     *
+     * @param player1 Whether player 1 is to move
+     * @return The score from the point of view of the player to move
+     */
+    int evaluate(boolean player1);
+
+    /**
+     * Accounts for a move about to be played.
+     *
+     * @param position The position before the move
+     * @param move The move
+     */
+    default void makeMove(BitBoard position, int move) {
+        int from = Move.from(move);
+        int captured = Move.captured(move);
+        int color = position.colorAt(from);
+        boolean king = position.isKing(from);
+        remove(from, color, king);
+        add(Move.to(move), color, king || Move.isPromotion(move));
+        if (captured != BitBoard.NONE) {
+            remove(captured, 3 - color, position.isKing(captured));
+        }
+    }
+
+    /**
+     * Accounts for a move that has just been taken back.
+     *
+     * @param position The position after taking the move back
+     * @param move The move
+     */
+    default void unmakeMove(BitBoard position, int move) {
+        int from = Move.from(move);
+        int captured = Move.captured(move);
+        int color = position.colorAt(from);
+        boolean king = position.isKing(from);
+        remove(Move.to(move), color, king || Move.isPromotion(move));
+        add(from, color, king);
+        if (captured != BitBoard.NONE) {
+            add(captured, 3 - color, position.isKing(captured));
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package org.cis1200.checkers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crash-safe journal of a game, kept in a directory as a snapshot file and
+ * an append-only log.
+ *
+ * Every move accepted by Checkers.movePiece (and every undo) is appended to
+ * the log as a fixed-width 8-byte record: the move and a checksum of the
+ * move and its index, with Move.NONE standing for an undo. Records are
+ * written to the file as they happen, so they survive the process dying;
+ * fsync is batched and runs at most once per commit interval, so a power
+ * failure loses at most that much play.
+ *
+ * Every so many records, and whenever the game is reset or replaced, the
+ * game is written to a new snapshot (in the save format, history included)
+ * which atomically replaces the old one, and the log is emptied. The log
+ * header holds the index of its first record and the snapshot the number of
+ * records it covers, so a crash between the two steps is harmless. Replay
+ * loads the snapshot and applies the records after it, stopping at the first
+ * torn or invalid record.
+ */
+final class GameJournal implements Closeable {
+    static final String LOG_FILE = "journal.log";
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    // log header: magic, version and the index of the first record
+    private static final int LOG_MAGIC = 0x434B4A4C;
+    private static final int SNAPSHOT_MAGIC = 0x434B534E;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 8;
+
+    private final Path directory;
+    private final long commitIntervalMillis;
+    private final int snapshotInterval;
+    private final FileChannel log;
+    private final ScheduledExecutorService committer;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+
+    private Checkers game;
+    // index of the next record, counted from the start of the game
+    private long next;
+    private long sinceSnapshot;
+    private boolean dirty;
+
+    /**
+     * Opens the journal in a directory, creating it if needed. Call recover
+     * to get the journaled game.
+     *
+     * @param directory The directory of the snapshot and log files
+     * @param commitIntervalMillis The longest time between fsyncs, 0 to
+     *                             fsync after every record
+     * @param snapshotInterval The number of records after which a snapshot
+     *                         is taken
+     * @throws IOException if the files cannot be opened
+     */
+    GameJournal(Path directory, long commitIntervalMillis, int snapshotInterval) throws IOException {
+        this.directory = directory;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+        log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (commitIntervalMillis > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "journal-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            committer.scheduleWithFixedDelay(this::commitQuietly,
+                    commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            committer = null;
+        }
+    }
+
+    /**
+     * Restores the game from the snapshot and the log, then attaches the
+     * journal to it so that further moves are recorded.
+     *
+     * @return The restored game, a new game if the journal is empty
+     * @throws IOException if the files cannot be read
+     */
+    synchronized Checkers recover() throws IOException {
+        Checkers restored = new Checkers();
+        long covered = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (in.remaining() < 12 || in.getInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Invalid snapshot " + snapshot);
+                }
+                covered = in.getLong();
+                restored = Checkers.read(in);
+            }
+        }
+
+        long base = covered;
+        long size = log.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (size >= HEADER_BYTES && log.read(header, 0) == HEADER_BYTES
+                && header.getInt(0) == LOG_MAGIC && header.getInt(4) == VERSION) {
+            base = header.getLong(8);
+            if (base > covered) {
+                // the records between the snapshot and the log are gone
+                base = covered;
+                size = HEADER_BYTES;
+                writeHeader(covered);
+            }
+        } else {
+            // missing or torn header: nothing in the log can be trusted
+            size = HEADER_BYTES;
+            writeHeader(covered);
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long valid = HEADER_BYTES;
+        if (size > HEADER_BYTES) {
+            ByteBuffer in = ByteBuffer.allocate((int) (size - HEADER_BYTES));
+            while (in.hasRemaining() && log.read(in, HEADER_BYTES + in.position()) > 0) {
+                // read the whole log, it is bounded by the snapshot interval
+            }
+            in.flip();
+            for (long index = base; in.remaining() >= RECORD_BYTES; index++) {
+                int move = in.getInt();
+                if (in.getInt() != checksum(index, move)) {
+                    break;
+                }
+                if (index >= covered && !apply(restored, move, moves)) {
+                    break;
+                }
+                valid += RECORD_BYTES;
+            }
+        }
+        long end = base + (valid - HEADER_BYTES) / RECORD_BYTES;
+        if (end < covered) {
+            // the log stops short of the snapshot, start it again after it
+            log.truncate(HEADER_BYTES);
+            writeHeader(covered);
+            end = covered;
+        } else {
+            // drop a torn or invalid tail so new records follow the valid ones
+            log.truncate(valid);
+        }
+        next = end;
+        sinceSnapshot = next - covered;
+        game = restored;
+        restored.setJournal(this);
+        return restored;
+    }
+
+    /**
+     * Replays one record, checking that a move is legal.
+     */
+    private static boolean apply(Checkers game, int move, int[] moves) {
+        if (move == Move.NONE) {
+            game.undo();
+            return true;
+        }
+        int count = game.generateMoves(moves);
+        for (int k = 0; k < count; k++) {
+            if (moves[k] == move) {
+                int from = Move.from(move);
+                int to = Move.to(move);
+                return game.movePiece(BitBoard.row(from), BitBoard.col(from), BitBoard.row(to), BitBoard.col(to));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes the journal record another game from now on, starting with a
+     * snapshot of it.
+     *
+     * @param game The game to journal
+     */
+    synchronized void attach(Checkers game) {
+        if (this.game != null && this.game != game) {
+            this.game.setJournal(null);
+        }
+        this.game = game;
+        game.setJournal(this);
+        snapshot();
+    }
+
+    /**
+     * Records a move that has just been played.
+     *
+     * @param move The move
+     */
+    synchronized void append(int move) {
+        try {
+            record.clear();
+            record.putInt(move).putInt(checksum(next, move)).flip();
+            log.write(record, log.size());
+            next++;
+            dirty = true;
+            if (commitIntervalMillis == 0) {
+                commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (++sinceSnapshot >= snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Records an undo that has just been made.
+     */
+    void appendUndo() {
+        append(Move.NONE);
+    }
+
+    /**
+     * Writes the current game to a new snapshot and empties the log.
+     */
+    synchronized void snapshot() {
+        try {
+            ByteBuffer out = ByteBuffer.allocate(12 + game.encodedSize());
+            out.putInt(SNAPSHOT_MAGIC).putLong(next);
+            game.write(out);
+            out.flip();
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.truncate(HEADER_BYTES);
+            writeHeader(next);
+            sinceSnapshot = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces the records written so far to disk.
+     *
+     * @throws IOException if the log cannot be synced
+     */
+    synchronized void commit() throws IOException {
+        if (dirty) {
+            log.force(false);
+            dirty = false;
+        }
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The number of records written since the game started
+     */
+    synchronized long getRecords() {
+        return next;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (committer != null) {
+            committer.shutdownNow();
+        }
+        if (game != null) {
+            game.setJournal(null);
+        }
+        commit();
+        log.close();
+    }
+
+    private void writeHeader(long base) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(LOG_MAGIC).putInt(VERSION).putLong(base).flip();
+        log.write(header, 0);
+        log.force(false);
+    }
+
+    private static int checksum(long index, int move) {
+        long mixed = (index * 0x9E3779B97F4A7C15L) ^ (move * 0xC2B2AE3D27D4EB4FL);
+        mixed ^= mixed >>> 29;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,23 @@
+package org.cis1200.checkers;
+
+/**
+ * The outcome of a game, see Checkers.getResult.
+ */
+enum GameResult {
+    ONGOING,
+    PLAYER1_WINS,
+    PLAYER2_WINS,
+    DRAW;
+
+    boolean isOver() {
+        return this != ONGOING;
+    }
+
+    /**
+     * @return 1 or 2 for the winning player, 0 if there is none (yet), as
+     *         returned by Checkers.checkWinner
+     */
+    int winner() {
+        return this == PLAYER1_WINS ? 1 : this == PLAYER2_WINS ? 2 : 0;
+    }
+}
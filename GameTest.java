@@ -2,6 +2,13 @@ package org.cis1200.checkers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class GameTest {
@@ -155,19 +162,27 @@ class GameTest {
         assertTrue(game.player1);
         assertTrue(game.movePiece(2,5,0,3));
         assertTrue(game.player1);
-        assertTrue(game.getPiece(0,3) instanceof KingPiece);
+        // passing over the far row in the middle of a capture does not crown
+        assertFalse(game.getPiece(0,3) instanceof KingPiece);
         assertTrue(game.movePiece(0,3,2,1));
         assertFalse(game.player1);
+        assertFalse(game.getPiece(2,1) instanceof KingPiece);
+
+        // a capture ending on the far row crowns
+        game.setPosition("W:W12:B7,8");
+        assertTrue(game.movePiece(2, 3, 0, 1));
+        assertFalse(game.player1);
+        assertTrue(game.getPiece(0, 1) instanceof KingPiece);
     }
 
     @Test
     void testUndo(){
         // make a move red
         assertTrue(game.movePiece(6, 1, 5, 2));
-        assertEquals(2, game.getMoveHistory().size());
+        assertEquals(1, game.getMoveHistory().length);
         // undo move
         game.undo();
-        assertEquals(1, game.getMoveHistory().size());
+        assertEquals(0, game.getMoveHistory().length);
         // make a move black
         assertFalse(game.movePiece(3, 6, 4, 5));
         // test (5, 2) empty
@@ -179,14 +194,14 @@ class GameTest {
         assertTrue(game.movePiece(3, 8, 4, 9));
         // undo move
         game.undo();
-        assertEquals(1, game.getMoveHistory().size());
+        assertEquals(0, game.getMoveHistory().length);
         // test (4, 9) empty
         assertNull(game.getPiece(4, 9));
         // test (3, 8) has black piece
         assertEquals(2, game.getPiece(3, 8).getColor());
         // test AI
         assertFalse(game.randomAI());
-        assertEquals(1, game.getMoveHistory().size());
+        assertEquals(0, game.getMoveHistory().length);
     }
 
     @Test
@@ -228,4 +243,401 @@ class GameTest {
         assertFalse(game.randomAI());
         assertEquals(1, game.checkWinner());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testBitBoardSquares() {
+        // every playable square maps to its own bit and back
+        long seen = 0L;
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                int square = BitBoard.square(i, j);
+                if ((i + j) % 2 == 1) {
+                    assertEquals(i, BitBoard.row(square));
+                    assertEquals(j, BitBoard.col(square));
+                    seen |= 1L << square;
+                } else {
+                    assertEquals(BitBoard.NONE, square);
+                }
+            }
+        }
+        assertEquals(BitBoard.PLAYABLE, seen);
+        assertEquals(20, Long.bitCount(game.getPosition().player1Pieces));
+        assertEquals(20, Long.bitCount(game.getPosition().player2Pieces));
+        // pieces are shared, so the same square returns the same object
+        assertSame(game.getPiece(6, 1), game.getPiece(6, 1));
+    }
+
+    @Test
+    void testGenerateMoves() {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        // the five front soldiers have two moves each except the one on the edge
+        assertEquals(9, game.generateMoves(moves));
+        game.movePiece(6, 1, 5, 2);
+        game.movePiece(3, 4, 4, 3);
+        // capturing is mandatory, so the only move is the jump over (4, 3)
+        assertEquals(1, game.generateMoves(moves));
+        assertTrue(Move.isCapture(moves[0]));
+        assertEquals(BitBoard.square(4, 3), Move.captured(moves[0]));
+        assertEquals(BitBoard.square(3, 4), Move.to(moves[0]));
+    }
+
+    @Test
+    void testMakeUnmakeMove() {
+        // play a capture sequence and take every move back
+        game.movePiece(6, 1, 5, 2);
+        game.movePiece(3, 2, 4, 1);
+        game.movePiece(7, 0, 6, 1);
+        game.movePiece(3, 8, 4, 9);
+        game.movePiece(5, 2, 4, 3);
+        long player1Pieces = game.getPosition().player1Pieces;
+        long player2Pieces = game.getPosition().player2Pieces;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = game.generateMoves(moves);
+        for (int k = 0; k < count; k++) {
+            game.makeMove(moves[k]);
+            game.unmakeMove();
+            assertEquals(player1Pieces, game.getPosition().player1Pieces);
+            assertEquals(player2Pieces, game.getPosition().player2Pieces);
+            assertFalse(game.player1);
+            assertEquals(20, game.numPlayer1);
+        }
+        assertTrue(game.movePiece(3, 4, 5, 2));
+        assertEquals(19, game.numPlayer1);
+        game.unmakeMove();
+        assertEquals(20, game.numPlayer1);
+        assertEquals(player1Pieces, game.getPosition().player1Pieces);
+        assertEquals(5, game.getMoveHistory().length);
+    }
+
+    @Test
+    void testZobristHash() {
+        assertEquals(Zobrist.hash(game.getPosition(), true, BitBoard.NONE), game.getHash());
+        // the same position reached through two move orders has the same hash
+        game.movePiece(6, 1, 5, 2);
+        game.movePiece(3, 8, 4, 9);
+        game.movePiece(6, 3, 5, 4);
+        long hash = game.getHash();
+        assertEquals(Zobrist.hash(game.getPosition(), game.player1, BitBoard.NONE), hash);
+        game.reset();
+        game.movePiece(6, 3, 5, 4);
+        game.movePiece(3, 8, 4, 9);
+        game.movePiece(6, 1, 5, 2);
+        assertEquals(hash, game.getHash());
+        game.unmakeMove();
+        game.makeMove(Move.quiet(BitBoard.square(6, 1), BitBoard.square(5, 2), false));
+        assertEquals(hash, game.getHash());
+    }
+
+    @Test
+    void testSaveLoadKeepsHistory() throws IOException {
+        Path file = Files.createTempFile("checkers", ".bin");
+        game.movePiece(6, 1, 5, 2);
+        game.movePiece(3, 4, 4, 3);
+        game.movePiece(5, 2, 3, 4);
+        game.movePiece(2, 3, 4, 5);
+        String fen = game.getFen();
+        long hash = game.getHash();
+        assertTrue(game.saveGame(file));
+        assertEquals(Files.size(file), game.encodedSize());
+
+        game.reset();
+        assertTrue(game.loadGame(file));
+        assertEquals(fen, game.getFen());
+        assertEquals(hash, game.getHash());
+        assertEquals(19, game.numPlayer1);
+        assertEquals(19, game.numPlayer2);
+        assertEquals(4, game.getMoveHistory().length);
+        // undo goes back through the loaded history
+        game.undo();
+        game.undo();
+        assertEquals(new Checkers().getFen(), game.getFen());
+        assertEquals(new Checkers().getHash(), game.getHash());
+
+        // a damaged file is rejected and the game is left alone
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] damaged = bytes.clone();
+        damaged[damaged.length - 1] ^= 0x3F;
+        Files.write(file, damaged);
+        assertFalse(game.loadGame(file));
+        assertEquals(0, game.getMoveHistory().length);
+
+        // so is a history state naming an impossible jumper
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int last = bytes.length - Long.BYTES;
+        buffer.putInt(last, buffer.getInt(last) | (60 << 12));
+        Files.write(file, bytes);
+        assertFalse(game.loadGame(file));
+        assertEquals(0, game.getMoveHistory().length);
+        Files.delete(file);
+    }
+
+    @Test
+    void testJournalReplay() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        GameJournal journal = new GameJournal(directory, 0, 5);
+        game = journal.recover();
+        assertEquals(new Checkers().getFen(), game.getFen());
+        game.movePiece(6, 1, 5, 2);
+        game.movePiece(3, 4, 4, 3);
+        game.movePiece(5, 2, 3, 4);
+        game.movePiece(2, 3, 4, 5);
+        game.movePiece(6, 7, 5, 8);
+        game.movePiece(3, 2, 4, 1);
+        // undo takes back black's reply and red's move
+        game.undo();
+        assertTrue(game.movePiece(6, 9, 5, 8));
+        assertTrue(game.movePiece(3, 8, 4, 9));
+        String fen = game.getFen();
+        journal.close();
+
+        // a record torn by a crash is ignored
+        Path log = directory.resolve(GameJournal.LOG_FILE);
+        Files.write(log, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+        journal = new GameJournal(directory, 1000, 5);
+        game = journal.recover();
+        assertEquals(fen, game.getFen());
+        assertEquals(6, game.getMoveHistory().length);
+        assertEquals(9, journal.getRecords());
+        game.undo();
+        journal.close();
+
+        journal = new GameJournal(directory, 0, 5);
+        game = journal.recover();
+        assertEquals(4, game.getMoveHistory().length);
+        journal.close();
+    }
+
+    @Test
+    void testNoLegalMoveLoses() {
+        // the white soldier is blocked in by the black one behind the edge
+        game.setPosition("W:W6:B1");
+        assertEquals(GameResult.PLAYER2_WINS, game.getResult());
+        assertEquals(2, game.checkWinner());
+        game.setPosition("B:W6:B1");
+        assertEquals(GameResult.ONGOING, game.getResult());
+    }
+
+    @Test
+    void testMobilityMatchesMoveGenerator() {
+        SplittableRandom random = new SplittableRandom(11);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int k = 0; k < 50; k++) {
+            game.reset();
+            while (true) {
+                int count = game.generateMoves(moves);
+                assertEquals(count > 0, MoveGenerator.hasMoves(game.getPosition(), game.player1, game.getJumper()));
+                if (count == 0) {
+                    break;
+                }
+                game.makeMove(moves[random.nextInt(count)]);
+            }
+            assertTrue(game.getResult().isOver());
+        }
+    }
+
+    @Test
+    void testKingMoveDraw() {
+        game.setPosition("W:WK46,K50:BK1,K5");
+        // one king of each side shuffles back and forth (which also repeats
+        // the position, so only the count is checked on the way)
+        int whiteOut = Move.quiet(BitBoard.fromNumber(50), BitBoard.fromNumber(44), false);
+        int whiteBack = Move.quiet(BitBoard.fromNumber(44), BitBoard.fromNumber(50), false);
+        int blackOut = Move.quiet(BitBoard.fromNumber(1), BitBoard.fromNumber(7), false);
+        int blackBack = Move.quiet(BitBoard.fromNumber(7), BitBoard.fromNumber(1), false);
+        for (int k = 0; k < Checkers.KING_MOVES_DRAW / 4; k++) {
+            assertEquals(4 * k, game.getKingMoves());
+            for (int move : new int[] {whiteOut, blackOut, whiteBack, blackBack}) {
+                assertTrue(game.isLegal(move));
+                game.makeMove(move);
+            }
+        }
+        assertEquals(Checkers.KING_MOVES_DRAW - Checkers.KING_MOVES_DRAW % 4, game.getKingMoves());
+        while (game.getKingMoves() < Checkers.KING_MOVES_DRAW) {
+            game.makeMove(game.player1 ? whiteOut : blackOut);
+        }
+        assertEquals(GameResult.DRAW, game.getResult());
+        assertEquals(0, game.checkWinner());
+        game.unmakeMove();
+        assertEquals(Checkers.KING_MOVES_DRAW - 1, game.getKingMoves());
+
+        // a soldier move starts the count again
+        game.setPosition("W:W31,K50:BK5");
+        game.makeMove(Move.quiet(BitBoard.fromNumber(50), BitBoard.fromNumber(44), false));
+        game.makeMove(Move.quiet(BitBoard.fromNumber(5), BitBoard.fromNumber(10), false));
+        assertEquals(2, game.getKingMoves());
+        game.makeMove(Move.quiet(BitBoard.fromNumber(31), BitBoard.fromNumber(26), false));
+        assertEquals(0, game.getKingMoves());
+    }
+
+    @Test
+    void testThreefoldRepetition() throws IOException {
+        game.setPosition("W:W31,K50:B20,K1");
+        int[] shuffle = {
+            Move.quiet(BitBoard.fromNumber(50), BitBoard.fromNumber(44), false),
+            Move.quiet(BitBoard.fromNumber(1), BitBoard.fromNumber(7), false),
+            Move.quiet(BitBoard.fromNumber(44), BitBoard.fromNumber(50), false),
+            Move.quiet(BitBoard.fromNumber(7), BitBoard.fromNumber(1), false),
+        };
+        assertEquals(1, game.getRepetitions());
+        for (int round = 2; round <= 3; round++) {
+            for (int move : shuffle) {
+                assertTrue(game.isLegal(move));
+                assertEquals(GameResult.ONGOING, game.getResult());
+                game.makeMove(move);
+            }
+            assertEquals(round, game.getRepetitions());
+        }
+        assertEquals(GameResult.DRAW, game.getResult());
+        game.unmakeMove();
+        assertEquals(2, game.getRepetitions());
+        game.makeMove(shuffle[3]);
+        assertEquals(GameResult.DRAW, game.getResult());
+
+        // a copy and a reloaded game count the same
+        assertEquals(3, new Checkers(game).getRepetitions());
+        ByteBuffer buffer = ByteBuffer.allocate(game.encodedSize());
+        game.write(buffer);
+        buffer.flip();
+        assertEquals(3, Checkers.read(buffer).getRepetitions());
+
+        // a soldier move makes the earlier positions unreachable
+        game.makeMove(Move.quiet(BitBoard.fromNumber(31), BitBoard.fromNumber(26), false));
+        assertEquals(1, game.getRepetitions());
+        assertEquals(GameResult.ONGOING, game.getResult());
+    }
+
+    @Test
+    void testCaptureIndexMatchesGenerator() {
+        // the incrementally updated capturers agree with a full scan through
+        // moves, takebacks and edits of the board
+        SplittableRandom random = new SplittableRandom(9);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int ply = 0; ply < 2000; ply++) {
+            int count = game.generateMoves(moves);
+            long expected = 0;
+            for (int k = 0; k < count; k++) {
+                if (Move.isCapture(moves[k])) {
+                    expected |= 1L << Move.from(moves[k]);
+                }
+            }
+            assertEquals(expected, game.capturingPieces());
+            assertEquals(expected != 0, game.currentPlayerCanJumpPiece());
+            int choice = random.nextInt(10);
+            if (count == 0 || choice == 0) {
+                game.reset();
+            } else if (choice == 1 && game.getMoveHistory().length > 0) {
+                game.unmakeMove();
+            } else if (choice == 2) {
+                long pieces = game.getPosition().occupied();
+                int square = Long.numberOfTrailingZeros(pieces);
+                game.deletePiece(BitBoard.row(square), BitBoard.col(square));
+            } else {
+                game.makeMove(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    @Test
+    void testPossibleJumpsNotStale() {
+        game.setPosition("W:W28,33:B22,23");
+        assertTrue(game.currentPlayerCanJumpPiece());
+        assertEquals(2, game.getAllPossiblePositions().size());
+        // with the black pieces gone nothing is left to jump
+        game.deletePiece(BitBoard.row(BitBoard.fromNumber(22)), BitBoard.col(BitBoard.fromNumber(22)));
+        game.deletePiece(BitBoard.row(BitBoard.fromNumber(23)), BitBoard.col(BitBoard.fromNumber(23)));
+        assertFalse(game.currentPlayerCanJumpPiece());
+        assertTrue(game.getAllPossiblePositions().isEmpty());
+    }
+
+    @Test
+    void testRayFreeLength() {
+        // the bit scan over a ray's mask finds the same first piece as
+        // stepping along the diagonal one square at a time
+        SplittableRandom random = new SplittableRandom(24);
+        for (int trial = 0; trial < 200; trial++) {
+            long occupied = random.nextLong() & random.nextLong() & BitBoard.PLAYABLE;
+            for (int square = 0; square < BitBoard.SIZE; square++) {
+                if (!BitBoard.isPlayable(square)) {
+                    continue;
+                }
+                for (int d = 0; d < MoveGenerator.DIRECTIONS.length; d++) {
+                    int length = 0;
+                    int to = square + MoveGenerator.DIRECTIONS[d];
+                    while (MoveGenerator.isSquare(to) && (occupied & (1L << to)) == 0) {
+                        assertEquals(to, MoveGenerator.ray(square, d)[length++]);
+                        to += MoveGenerator.DIRECTIONS[d];
+                    }
+                    assertEquals(length, MoveGenerator.freeLength(square, d, occupied));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMaximumCapture() {
+        // the soldier on 31 can take two pieces and the one on 34 only one,
+        // so only the double capture may be played
+        game.setPosition("W:W31,34:B18,27,30");
+        assertFalse(game.movePiece(6, 7, 4, 9));
+        assertTrue(game.movePiece(6, 1, 4, 3));
+        assertTrue(game.player1);
+        assertTrue(game.movePiece(4, 3, 2, 5));
+        assertFalse(game.player1);
+        assertEquals(1, game.numPlayer2);
+    }
+
+    @Test
+    void testCapturedPiecesBlock() {
+        // with 14 gone the king could come back down the diagonal after
+        // 19x10 and take 23, but a captured piece stays in the way until the
+        // capture ends
+        game.setPosition("W:WK19:B1,14,23,34");
+        assertTrue(game.movePiece(3, 6, 1, 8));
+        assertFalse(game.player1);
+        assertNull(game.getPiece(2, 7));
+        assertEquals(3, game.numPlayer2);
+    }
+
+    @Test
+    void testTurnsMatchMoves() {
+        // every hop of a whole turn is legal when its turn comes, and the
+        // move passes to the other player only after the last one
+        SplittableRandom random = new SplittableRandom(25);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] turns = new int[MoveGenerator.MAX_TURN_INTS];
+        for (int ply = 0; ply < 2000; ply++) {
+            int count = game.generateMoves(moves);
+            int end = game.generateTurns(turns, 0);
+            // sequences taking the same pieces to the same square are one
+            // turn, so only the pieces moving are sure to be the same
+            long pieces = 0;
+            for (int k = 0; k < count; k++) {
+                pieces |= 1L << Move.from(moves[k]);
+            }
+            for (int offset = 0; offset < end; offset += turns[offset] + 1) {
+                pieces &= ~(1L << Move.from(turns[offset + 1]));
+            }
+            assertEquals(0, pieces);
+            int turnCount = 0;
+            for (int offset = 0; offset < end; offset += turns[offset] + 1) {
+                boolean player1 = game.player1;
+                for (int k = 1; k <= turns[offset]; k++) {
+                    assertEquals(player1, game.player1);
+                    assertTrue(game.isLegal(turns[offset + k]), Move.toString(turns[offset + k]));
+                    game.makeMove(turns[offset + k]);
+                }
+                assertNotEquals(player1, game.player1);
+                for (int k = 0; k < turns[offset]; k++) {
+                    game.unmakeMove();
+                }
+                turnCount++;
+            }
+            assertEquals(count == 0, turnCount == 0);
+            if (count == 0) {
+                game.reset();
+            } else {
+                game.makeMove(moves[random.nextInt(count)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.cis1200.checkers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The default evaluation: material, kings, advancement, center control,
+ * back-rank guard and tempo.
+ *
+ * Every term but tempo depends on one piece and its square only, so the
+ * terms are folded into a piece-square table and the score is a running
+ * sum that each move changes by a few table entries.
+ *
+ * The score is linear in the weights, which EvaluationTuner fits to game
+ * results; the tuned weights are read back from a text file of "name value"
+ * lines.
+ */
+final class HandcraftedEvaluator implements Evaluator {
+    static final int SOLDIER = 0;
+    static final int KING = 1;
+    // bonus for a soldier advanced 1 to 8 rows, ADVANCEMENT + rows - 1
+    static final int ADVANCEMENT = 2;
+    static final int INNER_CENTER = 10;
+    static final int OUTER_CENTER = 11;
+    // soldier still on its own back row, keeping the other side from crowning
+    static final int BACK_RANK_GUARD = 12;
+    // bonus for having the move
+    static final int TEMPO = 13;
+    static final int WEIGHTS = 14;
+
+    static final List<String> WEIGHT_NAMES = List.of("soldier", "king",
+            "advance1", "advance2", "advance3", "advance4", "advance5", "advance6", "advance7", "advance8",
+            "innerCenter", "outerCenter", "backRankGuard", "tempo");
+    private static final int[] DEFAULT_WEIGHTS = {100, 300, 0, 1, 2, 4, 6, 9, 12, 16, 6, 3, 8, 4};
+
+    // weights counted by a player 1 piece on each square, indexed by
+    // (king ? 1 : 0) and square; player 2's are those of the turned square
+    private static final int[][][] TERMS = new int[2][BitBoard.SIZE][];
+
+    static {
+        for (int square = 0; square < BitBoard.SIZE; square++) {
+            if (!BitBoard.isPlayable(square)) {
+                continue;
+            }
+            int row = BitBoard.row(square);
+            int col = BitBoard.col(square);
+            int center = row >= 4 && row <= 5 && col >= 2 && col <= 7 ? INNER_CENTER
+                    : row >= 3 && row <= 6 && col >= 1 && col <= 8 ? OUTER_CENTER : -1;
+            int advanced = 9 - row;
+            // a soldier never stands on its crowning row
+            int progress = advanced == 0 ? BACK_RANK_GUARD : advanced < 9 ? ADVANCEMENT + advanced - 1 : -1;
+            int[] soldier = {SOLDIER, progress, center};
+            int[] king = {KING, center};
+            TERMS[0][square] = Arrays.stream(soldier).filter(t -> t >= 0).toArray();
+            TERMS[1][square] = Arrays.stream(king).filter(t -> t >= 0).toArray();
+        }
+    }
+
+    private final int[] weights;
+    // value of a piece on each square for player 1 (positive) or player 2
+    // (negative), indexed by (color - 1) * 2 + (king ? 1 : 0)
+    private final int[][] pieceSquare = new int[4][BitBoard.SIZE];
+    // player 1's score minus player 2's
+    private int score;
+
+    /**
+     * Creates an evaluator with the default weights.
+     */
+    HandcraftedEvaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Creates an evaluator with the given weights.
+     *
+     * @param weights The weights, indexed by SOLDIER, KING and so on
+     */
+    HandcraftedEvaluator(int[] weights) {
+        if (weights.length != WEIGHTS) {
+            throw new IllegalArgumentException("expected " + WEIGHTS + " weights: " + weights.length);
+        }
+        this.weights = weights.clone();
+        for (int square = 0; square < BitBoard.SIZE; square++) {
+            if (!BitBoard.isPlayable(square)) {
+                continue;
+            }
+            int turned = turn(square);
+            for (int king = 0; king < 2; king++) {
+                for (int term : TERMS[king][square]) {
+                    pieceSquare[king][square] += weights[term];
+                }
+                for (int term : TERMS[king][turned]) {
+                    pieceSquare[2 + king][square] -= weights[term];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return A copy of the default weights
+     */
+    static int[] defaultWeights() {
+        return DEFAULT_WEIGHTS.clone();
+    }
+
+    /**
+     * @return A copy of the weights of this evaluator
+     */
+    int[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Returns the square a piece would be on with the board turned around.
+     */
+    private static int turn(int square) {
+        return BitBoard.fromNumber(51 - BitBoard.number(square));
+    }
+
+    /**
+     * Counts the terms of a position the score is made of, so that the
+     * score from player 1's point of view is the sum of each count times
+     * its weight.
+     *
+     * @param player1Pieces The squares of player 1's pieces
+     * @param player2Pieces The squares of player 2's pieces
+     * @param kings The squares of the kings
+     * @param player1 Whether player 1 is to move
+     * @param counts Receives player 1's count of each term minus player 2's
+     */
+    static void countTerms(long player1Pieces, long player2Pieces, long kings, boolean player1, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (long pieces = player1Pieces; pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            for (int term : TERMS[(kings >>> square & 1) != 0 ? 1 : 0][square]) {
+                counts[term]++;
+            }
+        }
+        for (long pieces = player2Pieces; pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            for (int term : TERMS[(kings >>> square & 1) != 0 ? 1 : 0][turn(square)]) {
+                counts[term]--;
+            }
+        }
+        counts[TEMPO] = player1 ? 1 : -1;
+    }
+
+    /**
+     * Reads weights written by writeWeights. Weights the file does not name
+     * keep their default.
+     *
+     * @param file The weights file
+     * @return The weights
+     * @throws IOException if the file cannot be read or names an unknown
+     *                     weight
+     */
+    static int[] readWeights(Path file) throws IOException {
+        int[] weights = defaultWeights();
+        int number = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            number++;
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty() || fields[0].startsWith("#")) {
+                continue;
+            }
+            int index = WEIGHT_NAMES.indexOf(fields[0]);
+            if (index < 0 || fields.length != 2) {
+                throw new IOException(file + ":" + number + ": bad weight line: " + line);
+            }
+            try {
+                weights[index] = Integer.parseInt(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ":" + number + ": bad weight line: " + line, e);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Writes weights as "name value" lines, replacing the file atomically.
+     *
+     * @param file The weights file
+     * @param weights The weights
+     * @throws IOException if the file cannot be written
+     */
+    static void writeWeights(Path file, int[] weights) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (int k = 0; k < WEIGHTS; k++) {
+                out.write(WEIGHT_NAMES.get(k) + " " + weights[k]);
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void reset(BitBoard position) {
+        score = 0;
+        for (long pieces = position.occupied(); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            add(square, position.colorAt(square), position.isKing(square));
+        }
+    }
+
+    @Override
+    public void add(int square, int color, boolean king) {
+        score += pieceSquare[(color - 1) * 2 + (king ? 1 : 0)][square];
+    }
+
+    @Override
+    public void remove(int square, int color, boolean king) {
+        score -= pieceSquare[(color - 1) * 2 + (king ? 1 : 0)][square];
+    }
+
+    @Override
+    public int evaluate(boolean player1) {
+        return (player1 ? score : -score) + weights[TEMPO];
+    }
+}
@@ -0,0 +1,120 @@
+package org.cis1200.checkers;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with log-linear buckets, in the style of
+ * HdrHistogram.
+ *
+ * Each power of two is split into SUB_BUCKETS equal buckets, so a value is
+ * counted in a bucket no wider than 1/SUB_BUCKETS of it and percentiles
+ * are within that relative error, from nanoseconds to centuries, in under
+ * a thousand counters. Recording is a couple of bit operations and an
+ * atomic increment, safe from any number of threads.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int SIZE = (Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one value.
+     *
+     * @param value The value, in nanoseconds; negative values count as 0
+     */
+    void record(long value) {
+        long clamped = Math.max(value, 0);
+        counts.incrementAndGet(index(clamped));
+        count.increment();
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    /**
+     * Returns the bucket of a value: values below SUB_BUCKETS have their
+     * own, larger ones share a bucket with the values of the same top
+     * SUB_BITS + 1 bits.
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return The largest value counted in a bucket
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return The mean value, 0 if nothing was recorded
+     */
+    double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns a percentile of the recorded values.
+     *
+     * @param percentile The percentile, 0 to 100
+     * @return The highest value of the bucket the percentile falls in, at
+     *         most the largest recorded value; 0 if nothing was recorded
+     */
+    long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[SIZE];
+        for (int k = 0; k < SIZE; k++) {
+            snapshot[k] = counts.get(k);
+            total += snapshot[k];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int k = 0; k < SIZE; k++) {
+            seen += snapshot[k];
+            if (seen >= rank) {
+                return Math.min(highestValue(k), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets every value. Values recorded meanwhile may be partly lost.
+     */
+    void reset() {
+        for (int k = 0; k < SIZE; k++) {
+            counts.set(k, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,209 @@
+package org.cis1200.checkers;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in counters and latency histograms for the hot paths of the game.
+ *
+ * Metrics are enabled with -Dcheckers.metrics=true. ENABLED is a constant,
+ * so when it is false the JIT removes the timing calls altogether and the
+ * instrumented code runs as if it had none. When enabled, a timed call costs
+ * two System.nanoTime calls and a few atomic increments. The figures can be
+ * read over JMX (see MetricsMXBean) or as plain text from dump, which is
+ * also printed to standard error when the program exits.
+ */
+final class Metrics {
+    static final boolean ENABLED = Boolean.getBoolean("checkers.metrics");
+    static final String OBJECT_NAME = "org.cis1200.checkers:type=Metrics";
+
+    /**
+     * The timed operations, each with its histogram.
+     */
+    enum Timer {
+        MOVE_VALIDATION("movePiece"),
+        JUMP_DETECTION("currentPlayerCanJumpPiece"),
+        AI_MOVE("aiMove"),
+        UNDO("undo"),
+        SAVE("saveGame"),
+        LOAD("loadGame");
+
+        final String label;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Timer(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final LongAdder MOVES = new LongAdder();
+    private static final LongAdder GAMES = new LongAdder();
+    private static volatile long since = System.nanoTime();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(dump()), "metrics-dump"));
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return The start time to pass to stop, or 0 when metrics are off
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of an operation started with start.
+     *
+     * @param timer The operation
+     * @param start The value start returned
+     */
+    static void stop(Timer timer, long start) {
+        if (ENABLED) {
+            timer.histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts a move played in a game (not one tried by a search).
+     */
+    static void countMove() {
+        if (ENABLED) {
+            MOVES.increment();
+        }
+    }
+
+    /**
+     * Counts a finished game.
+     */
+    static void countGame() {
+        if (ENABLED) {
+            GAMES.increment();
+        }
+    }
+
+    /**
+     * Starts counting again from zero.
+     */
+    static void reset() {
+        for (Timer timer : Timer.values()) {
+            timer.histogram.reset();
+        }
+        MOVES.reset();
+        GAMES.reset();
+        since = System.nanoTime();
+    }
+
+    private static double perSecond(long count) {
+        double seconds = (System.nanoTime() - since) / 1e9;
+        return seconds <= 0 ? 0 : count / seconds;
+    }
+
+    /**
+     * Formats every counter and histogram, one line each.
+     *
+     * @return The report
+     */
+    static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("checkers metrics (%s)%n", ENABLED ? "enabled" : "disabled"));
+        sb.append(String.format("moves %d (%.1f/s)  games %d (%.3f/s)%n", MOVES.sum(), perSecond(MOVES.sum()),
+                GAMES.sum(), perSecond(GAMES.sum())));
+        sb.append(String.format("%-26s %10s %10s %10s %10s %10s%n", "operation", "count", "mean us", "p50 us",
+                "p99 us", "max us"));
+        for (Timer timer : Timer.values()) {
+            LatencyHistogram h = timer.histogram;
+            sb.append(String.format("%-26s %10d %10.1f %10.1f %10.1f %10.1f%n", timer.label, h.getCount(),
+                    h.getMean() / 1e3, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getMax() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Double> byTimer(ToDoubleFunction<LatencyHistogram> nanos) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Timer timer : Timer.values()) {
+            values.put(timer.label, nanos.applyAsDouble(timer.histogram) / 1e3);
+        }
+        return values;
+    }
+
+    /**
+     * The registered MXBean, reading the static figures.
+     */
+    private static final class Bean implements MetricsMXBean {
+        @Override
+        public long getMoves() {
+            return MOVES.sum();
+        }
+
+        @Override
+        public long getGames() {
+            return GAMES.sum();
+        }
+
+        @Override
+        public double getMovesPerSecond() {
+            return perSecond(MOVES.sum());
+        }
+
+        @Override
+        public double getGamesPerSecond() {
+            return perSecond(GAMES.sum());
+        }
+
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Timer timer : Timer.values()) {
+                counts.put(timer.label, timer.histogram.getCount());
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getMeanMicros() {
+            return byTimer(LatencyHistogram::getMean);
+        }
+
+        @Override
+        public Map<String, Double> getP50Micros() {
+            return byTimer(h -> h.getPercentile(50));
+        }
+
+        @Override
+        public Map<String, Double> getP99Micros() {
+            return byTimer(h -> h.getPercentile(99));
+        }
+
+        @Override
+        public Map<String, Double> getMaxMicros() {
+            return byTimer(LatencyHistogram::getMax);
+        }
+
+        @Override
+        public String getDump() {
+            return dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
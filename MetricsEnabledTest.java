@@ -0,0 +1,52 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs with -Dcheckers.metrics=true in its own JVM, from the metrics
+ * execution of surefire in pom.xml; the other tests run with metrics off.
+ */
+class MetricsEnabledTest {
+    @Test
+    void testTimersAndMXBean(@TempDir Path dir) throws JMException {
+        assertTrue(Metrics.ENABLED, "run with -Dcheckers.metrics=true");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        MetricsMXBean bean = JMX.newMXBeanProxy(server, name, MetricsMXBean.class);
+        bean.reset();
+
+        Checkers game = new Checkers();
+        Path file = dir.resolve("metrics.save");
+        assertTrue(game.movePiece(6, 1, 5, 0));
+        assertFalse(game.currentPlayerCanJumpPiece());
+        // the engine's move is played through movePiece
+        assertTrue(game.engineAI(new Search(2, Long.MAX_VALUE, 10_000)));
+        // undo and loadGame look for jumps in the position they leave
+        game.undo();
+        assertTrue(game.saveGame(file));
+        assertTrue(game.loadGame(file));
+
+        Map<Metrics.Timer, Long> expected = Map.of(Metrics.Timer.MOVE_VALIDATION, 2L,
+                Metrics.Timer.JUMP_DETECTION, 3L, Metrics.Timer.AI_MOVE, 1L, Metrics.Timer.UNDO, 1L,
+                Metrics.Timer.SAVE, 1L, Metrics.Timer.LOAD, 1L);
+        Map<String, Long> counts = bean.getCounts();
+        assertEquals(Metrics.Timer.values().length, counts.size());
+        for (Metrics.Timer timer : Metrics.Timer.values()) {
+            assertEquals(expected.get(timer), timer.histogram.getCount(), timer.label);
+            assertEquals(expected.get(timer), counts.get(timer.label), timer.label);
+        }
+        assertEquals(2, bean.getMoves());
+        assertEquals(0, bean.getGames());
+    }
+}
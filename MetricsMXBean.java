@@ -0,0 +1,38 @@
+package org.cis1200.checkers;
+
+import java.util.Map;
+
+/**
+ * The JMX view of Metrics, registered as "org.cis1200.checkers:type=Metrics"
+ * when metrics are enabled. Durations are in microseconds and maps are keyed
+ * by operation name.
+ */
+public interface MetricsMXBean {
+    long getMoves();
+
+    long getGames();
+
+    double getMovesPerSecond();
+
+    double getGamesPerSecond();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP50Micros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getMaxMicros();
+
+    /**
+     * @return The plain-text report, see Metrics.dump
+     */
+    String getDump();
+
+    /**
+     * Starts counting again from zero.
+     */
+    void reset();
+}
@@ -0,0 +1,78 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    @Test
+    void testBuckets() {
+        // buckets are contiguous and no wider than 1/16 of their values
+        long previous = -1;
+        for (int index = 0; LatencyHistogram.highestValue(index) > previous && index < 900; index++) {
+            long highest = LatencyHistogram.highestValue(index);
+            assertEquals(index, LatencyHistogram.index(previous + 1));
+            assertEquals(index, LatencyHistogram.index(highest));
+            assertTrue(highest - previous <= Math.max(1, (previous + 1) / LatencyHistogram.SUB_BUCKETS));
+            previous = highest;
+        }
+        assertTrue(LatencyHistogram.index(Long.MAX_VALUE) > LatencyHistogram.index(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_500, histogram.getMean(), 1e-9);
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 500_000 && median <= 500_000 * 17 / 16, "median " + median);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, "p99 " + p99);
+        assertEquals(1_000_000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int k = 0; k < 4; k++) {
+            pool.execute(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    histogram.record(n);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(9_999, histogram.getMax());
+    }
+
+    @Test
+    void testDisabledByDefault() {
+        // the tests run without -Dcheckers.metrics
+        assertFalse(Metrics.ENABLED);
+        assertEquals(0, Metrics.start());
+        Checkers game = new Checkers();
+        assertTrue(game.movePiece(6, 1, 5, 0));
+        game.undo();
+        assertEquals(0, Metrics.Timer.MOVE_VALIDATION.histogram.getCount());
+        String dump = Metrics.dump();
+        assertTrue(dump.contains("disabled"));
+        for (Metrics.Timer timer : Metrics.Timer.values()) {
+            assertTrue(dump.contains(timer.label));
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.cis1200.checkers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monte Carlo tree search (UCT) used as an alternative AI player.
+ *
+ * Each playout walks down the tree choosing the child with the best upper
+ * confidence bound, adds the children of the leaf it reaches, and finishes
+ * the game with random moves. The result is then added to every node on the
+ * path, from the point of view of the player who made the move into it, so
+ * continuation hops of a multi-jump are handled like any other move.
+ *
+ * Playouts run on a fork-join pool, each worker on its own copy of the game.
+ * The tree is kept in preallocated arrays indexed by node number, with the
+ * children of a node stored next to each other, and is updated with atomic
+ * operations. A worker adds a virtual loss to every node it walks through
+ * and removes it when the playout finishes, which steers concurrent workers
+ * down different paths.
+ *
+ * The search runs until its wall-clock budget (or playout limit) is used up
+ * and plays the most visited move.
+ */
+class MonteCarloSearch implements Engine {
+    static final int DEFAULT_CAPACITY = 1 << 20;
+    // exploration constant of the upper confidence bound
+    private static final double EXPLORATION = 1.4;
+    private static final int VIRTUAL_LOSS = 3;
+    // random games longer than this are scored as draws
+    private static final int MAX_PLAYOUT_PLIES = 300;
+
+    // values of firstChild for a node without children yet
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    private static final int FULL = -3;
+
+    private final int threads;
+    private final long timeLimitMillis;
+    private final long playoutLimit;
+    private final ForkJoinPool pool;
+    private final SplittableRandom seeds = new SplittableRandom();
+
+    // node store: the move leading to each node, where its children start
+    // and how many there are, its visits and its score in half points
+    private final int[] moves;
+    private final int[] childCount;
+    private final AtomicIntegerArray firstChild;
+    private final AtomicIntegerArray visits;
+    private final AtomicLongArray wins;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    // when the workers stop starting playouts
+    private volatile long deadline;
+    // set from another thread to stop the search, until clearAbort
+    private volatile boolean aborted;
+    private long playouts;
+    private long elapsedNanos;
+    private int maxDepth;
+    private int bestScore;
+
+    /**
+     * Creates an engine using all available processors, limited to 100 ms
+     * per move.
+     */
+    MonteCarloSearch() {
+        this(Runtime.getRuntime().availableProcessors(), 100, Long.MAX_VALUE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an engine with the given limits.
+     *
+     * @param threads The number of threads running playouts
+     * @param timeLimitMillis The time after which the search stops
+     * @param playoutLimit The number of playouts after which the search stops
+     * @param capacity The number of tree nodes to allocate
+     */
+    MonteCarloSearch(int threads, long timeLimitMillis, long playoutLimit, int capacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+        this.timeLimitMillis = timeLimitMillis;
+        this.playoutLimit = playoutLimit;
+        pool = new ForkJoinPool(threads);
+        moves = new int[capacity];
+        childCount = new int[capacity];
+        firstChild = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        wins = new AtomicLongArray(capacity);
+    }
+
+    @Override
+    public int findBestMove(Checkers game) {
+        playouts = 0;
+        maxDepth = 0;
+        bestScore = 0;
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int count = game.generateMoves(rootMoves);
+        if (count == 0) {
+            return Move.NONE;
+        }
+        if (count == 1) {
+            return rootMoves[0];
+        }
+
+        nodeCount.set(1);
+        initNode(0, Move.NONE);
+        long start = System.nanoTime();
+        deadline = start + timeLimitMillis * 1_000_000L;
+        AtomicLong started = new AtomicLong();
+        List<ForkJoinTask<Worker>> tasks = new ArrayList<>();
+        for (int k = 0; k < threads; k++) {
+            tasks.add(pool.submit(new Worker(new Checkers(game), seeds.split(), started)));
+        }
+        for (ForkJoinTask<Worker> task : tasks) {
+            Worker worker = task.join();
+            playouts += worker.playouts;
+            maxDepth = Math.max(maxDepth, worker.maxDepth);
+        }
+        elapsedNanos = System.nanoTime() - start;
+
+        int first = firstChild.get(0);
+        if (first < 0) {
+            return rootMoves[0];
+        }
+        int best = first;
+        for (int child = first + 1; child < first + childCount[0]; child++) {
+            if (visits.get(child) > visits.get(best)) {
+                best = child;
+            }
+        }
+        if (visits.get(best) > 0) {
+            bestScore = (int) (wins.get(best) * 1000 / visits.get(best)) - 1000;
+        }
+        return moves[best];
+    }
+
+    /**
+     * @return The number of playouts of the last search
+     */
+    long getPlayouts() {
+        return playouts;
+    }
+
+    /**
+     * @return The playouts per second of the last search
+     */
+    double getPlayoutsPerSecond() {
+        return elapsedNanos == 0 ? 0 : playouts / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * @return The number of tree nodes of the last search
+     */
+    @Override
+    public long getNodes() {
+        return Math.min(nodeCount.get(), moves.length);
+    }
+
+    /**
+     * @return The deepest node reached by the last search
+     */
+    @Override
+    public int getDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return The average result of the chosen move, from -1000 for a
+     *         certain loss to 1000 for a certain win
+     */
+    @Override
+    public int getScore() {
+        return bestScore;
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public void clearAbort() {
+        aborted = false;
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void initNode(int node, int move) {
+        moves[node] = move;
+        childCount[node] = 0;
+        visits.set(node, 0);
+        wins.set(node, 0);
+        firstChild.set(node, UNEXPANDED);
+    }
+
+    /**
+     * Adds the children of a node, unless another worker is already doing
+     * so or the node store is full.
+     */
+    private void expand(int node, Checkers game, int[] buffer) {
+        if (!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return;
+        }
+        int count = game.generateMoves(buffer);
+        int first = nodeCount.getAndAdd(count);
+        if (first + count > moves.length) {
+            firstChild.set(node, FULL);
+            return;
+        }
+        for (int k = 0; k < count; k++) {
+            initNode(first + k, buffer[k]);
+        }
+        childCount[node] = count;
+        // publishes the children to the other workers
+        firstChild.set(node, first);
+    }
+
+    /**
+     * Returns the child with the best upper confidence bound, counting
+     * virtual losses as visits without a win.
+     */
+    private int select(int node, int first) {
+        double logVisits = Math.log(Math.max(1, visits.get(node)));
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + childCount[node]; child++) {
+            int n = visits.get(child);
+            if (n == 0) {
+                return child;
+            }
+            double value = wins.get(child) / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private class Worker implements Callable<Worker> {
+        private final Checkers game;
+        private final SplittableRandom random;
+        private final AtomicLong started;
+        private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        private final int[] path = new int[MAX_PLAYOUT_PLIES];
+        // whether player 1 made the move into each node of the path
+        private final boolean[] movers = new boolean[MAX_PLAYOUT_PLIES];
+        private long playouts;
+        private int maxDepth;
+
+        Worker(Checkers game, SplittableRandom random, AtomicLong started) {
+            this.game = game;
+            this.random = random;
+            this.started = started;
+        }
+
+        @Override
+        public Worker call() {
+            while (started.getAndIncrement() < playoutLimit && System.nanoTime() < deadline && !aborted) {
+                playout();
+                playouts++;
+            }
+            return this;
+        }
+
+        private void playout() {
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            visits.addAndGet(0, VIRTUAL_LOSS);
+            while (depth < path.length - 1) {
+                int first = firstChild.get(node);
+                if (first == UNEXPANDED) {
+                    expand(node, game, buffer);
+                    first = firstChild.get(node);
+                }
+                if (first < 0 || childCount[node] == 0) {
+                    break;
+                }
+                int child = select(node, first);
+                movers[depth + 1] = game.player1;
+                game.makeMove(moves[child]);
+                path[++depth] = child;
+                node = child;
+                if (visits.getAndAdd(child, VIRTUAL_LOSS) == 0) {
+                    break;
+                }
+            }
+            maxDepth = Math.max(maxDepth, depth);
+
+            // finish the game at random: 1 if player 1 wins, -1 if player 2 wins
+            int result = 0;
+            int plies = depth;
+            while (plies < MAX_PLAYOUT_PLIES && !game.isDraw()) {
+                int move = game.randomMove(random);
+                if (move == Move.NONE) {
+                    result = game.player1 ? -1 : 1;
+                    break;
+                }
+                game.makeMove(move);
+                plies++;
+            }
+            for (int k = 0; k < plies; k++) {
+                game.unmakeMove();
+            }
+
+            for (int k = 0; k <= depth; k++) {
+                visits.addAndGet(path[k], 1 - VIRTUAL_LOSS);
+                if (k > 0) {
+                    wins.addAndGet(path[k], result == 0 ? 1 : (result == 1) == movers[k] ? 2 : 0);
+                }
+            }
+        }
+    }
+}
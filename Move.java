@@ -0,0 +1,95 @@
+package org.cis1200.checkers;
+
+/**
+ * Helpers for moves packed into a single int.
+ *
+ * Bits 0-5 hold the square the piece moves from and bits 6-11 the square it
+ * lands on (both bitboard indices, see BitBoard). Bits 12-17 hold the square
+ * of the captured piece and bit 18 is set when the move is a capture, so the
+ * captured-square mask is a single shift away. Bit 19 is set when the move
+ * turns a soldier into a king.
+ */
+final class Move {
+    static final int NONE = 0;
+
+    private static final int SQUARE_BITS = 0x3F;
+    private static final int CAPTURE_FLAG = 1 << 18;
+    private static final int PROMOTION_FLAG = 1 << 19;
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move without a capture.
+     *
+     * @param from The square the piece moves from
+     * @param to The square the piece lands on
+     * @param promotion Whether the piece becomes a king
+     * @return The packed move
+     */
+    static int quiet(int from, int to, boolean promotion) {
+        return from | (to << 6) | (promotion ? PROMOTION_FLAG : 0);
+    }
+
+    /**
+     * Packs a move that captures one piece.
+     *
+     * @param from The square the piece moves from
+     * @param to The square the piece lands on
+     * @param captured The square of the captured piece
+     * @param promotion Whether the piece becomes a king
+     * @return The packed move
+     */
+    static int capture(int from, int to, int captured, boolean promotion) {
+        return from | (to << 6) | (captured << 12) | CAPTURE_FLAG | (promotion ? PROMOTION_FLAG : 0);
+    }
+
+    static int from(int move) {
+        return move & SQUARE_BITS;
+    }
+
+    static int to(int move) {
+        return (move >>> 6) & SQUARE_BITS;
+    }
+
+    static boolean isCapture(int move) {
+        return (move & CAPTURE_FLAG) != 0;
+    }
+
+    static boolean isPromotion(int move) {
+        return (move & PROMOTION_FLAG) != 0;
+    }
+
+    /**
+     * Returns the square of the captured piece.
+     *
+     * @param move The packed move
+     * @return The captured square, or BitBoard.NONE for a quiet move
+     */
+    static int captured(int move) {
+        return isCapture(move) ? (move >>> 12) & SQUARE_BITS : BitBoard.NONE;
+    }
+
+    /**
+     * Returns the captured squares as a bitboard mask.
+     *
+     * @param move The packed move
+     * @return The mask of captured squares, 0 for a quiet move
+     */
+    static long capturedMask(int move) {
+        return isCapture(move) ? 1L << ((move >>> 12) & SQUARE_BITS) : 0L;
+    }
+
+    /**
+     * Formats a move as "row,col-row,col" for logs and test messages.
+     *
+     * @param move The packed move
+     * @return The formatted move
+     */
+    static String toString(int move) {
+        int from = from(move);
+        int to = to(move);
+        return BitBoard.row(from) + "," + BitBoard.col(from) + (isCapture(move) ? "x" : "-")
+                + BitBoard.row(to) + "," + BitBoard.col(to);
+    }
+}
@@ -0,0 +1,474 @@
+package org.cis1200.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Legal move generation on a BitBoard.
+ *
+ * Moves are written as packed ints (see Move) into a buffer supplied by the
+ * caller, so generating moves does not allocate. The rules match the ones
+ * movePiece enforces: capturing is mandatory, soldiers capture in all four
+ * directions but only move forward, kings fly along empty diagonals, and a
+ * piece that has just captured must keep capturing while it can. Of all
+ * capture sequences only those taking the most pieces may be played. A
+ * captured piece stays on the board until its sequence ends, so it blocks
+ * the capturing piece and cannot be captured twice. A soldier is only
+ * crowned if its sequence ends on the far row; one passing over the far row
+ * in the middle of a sequence goes on as a soldier.
+ *
+ * Capture sequences are followed depth first on masks alone: the squares
+ * of the pieces captured so far are taken out of the enemy mask while they
+ * stay in the occupied mask, so the board is never copied or changed.
+ */
+final class MoveGenerator {
+    /**
+     * Size of a move buffer large enough for any position.
+     */
+    static final int MAX_MOVES = 512;
+
+    /**
+     * Size of a turn buffer large enough for any position, see
+     * generateTurns.
+     */
+    static final int MAX_TURN_INTS = 1 << 13;
+
+    // diagonal steps in bitboard indices: up-left, up-right, down-left, down-right
+    static final int[] DIRECTIONS = {-6, -5, 5, 6};
+
+    // squares where a soldier of each color becomes a king
+    private static final long PROMOTION_ROW_1 = 0x1FL;
+    private static final long PROMOTION_ROW_2 = 0x1FL << 49;
+
+    // squares from each square to the edge of the board in each direction,
+    // nearest first, and the same squares as a mask
+    private static final int[][][] RAYS = new int[BitBoard.SIZE][DIRECTIONS.length][];
+    private static final long[][] RAY_MASKS = new long[BitBoard.SIZE][DIRECTIONS.length];
+
+    static {
+        int[] ray = new int[10];
+        for (int square = 0; square < BitBoard.SIZE; square++) {
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int length = 0;
+                if (isSquare(square)) {
+                    for (int to = square + DIRECTIONS[d]; isSquare(to); to += DIRECTIONS[d]) {
+                        ray[length++] = to;
+                        RAY_MASKS[square][d] |= 1L << to;
+                    }
+                }
+                RAYS[square][d] = Arrays.copyOf(ray, length);
+            }
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Generates all legal moves for the side to move. A capture sequence is
+     * played one hop at a time, so only the hops that start one of the
+     * longest sequences are written.
+     *
+     * @param position The position
+     * @param player1 Whether player 1 is to move
+     * @param jumper The square of a piece that must continue capturing, or BitBoard.NONE
+     * @param jumped The pieces the jumper has already captured, see Checkers.jumpedPieces
+     * @param moves The buffer the moves are written to
+     * @return The number of moves written
+     */
+    static int generate(BitBoard position, boolean player1, int jumper, long jumped, int[] moves) {
+        int color = player1 ? 1 : 2;
+        long pieces = jumper != BitBoard.NONE ? 1L << jumper : position.pieces(color);
+        int count = longestCaptures(position, color, pieces, jumped, moves, 0);
+        if (count > 0 || jumper != BitBoard.NONE) {
+            return count;
+        }
+        for (long p = pieces; p != 0; p &= p - 1) {
+            count = quietMoves(position, Long.numberOfTrailingZeros(p), color, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * Generates all legal turns for the side to move: every quiet move, or
+     * every whole capture sequence taking the most pieces. A turn is written
+     * as its number of hops followed by the hops. Sequences that capture the
+     * same pieces and end on the same square lead to the same position and
+     * are written once.
+     *
+     * @param position The position
+     * @param player1 Whether player 1 is to move
+     * @param jumper The square of a piece that must continue capturing, or BitBoard.NONE
+     * @param jumped The pieces the jumper has already captured, see Checkers.jumpedPieces
+     * @param turns The buffer the turns are written to, with at least
+     *              MAX_TURN_INTS entries from start
+     * @param start The index of the first entry to write
+     * @return The index after the last turn written
+     */
+    static int generateTurns(BitBoard position, boolean player1, int jumper, long jumped, int[] turns, int start) {
+        int color = player1 ? 1 : 2;
+        long enemies = position.pieces(3 - color);
+        long pieces = jumper != BitBoard.NONE ? 1L << jumper : position.pieces(color);
+        int end = start;
+        for (long p = pieces; p != 0; p &= p - 1) {
+            int square = Long.numberOfTrailingZeros(p);
+            // the capturing piece has left its square
+            long occupied = (position.occupied() | jumped) & ~(1L << square);
+            end = extend(turns, start, end, square, position.isKing(square), color, occupied, enemies, 0);
+        }
+        if (end > start || jumper != BitBoard.NONE) {
+            return end;
+        }
+        int count = 0;
+        for (long p = pieces; p != 0; p &= p - 1) {
+            count = quietMoves(position, Long.numberOfTrailingZeros(p), color, turns, start + count) - start;
+        }
+        // spread the moves out in place, last first, into one-hop turns
+        for (int k = count - 1; k >= 0; k--) {
+            turns[start + 2 * k + 1] = turns[start + k];
+            turns[start + 2 * k] = 1;
+        }
+        return start + 2 * count;
+    }
+
+    /**
+     * Checks whether the side to move has a legal move, using a few shifts of
+     * whole bitboards instead of generating moves. A soldier or king that can
+     * step onto an adjacent empty square can move, and any capture starts
+     * with an adjacent enemy piece and an empty square right behind it (a
+     * king capturing from further away also has an empty square next to it).
+     *
+     * @param position The position
+     * @param player1 Whether player 1 is to move
+     * @param jumper The square of a piece that must continue capturing, or BitBoard.NONE
+     * @return True if the side to move has at least one legal move
+     */
+    static boolean hasMoves(BitBoard position, boolean player1, int jumper) {
+        if (jumper != BitBoard.NONE) {
+            // a piece only keeps the turn while it can capture
+            return true;
+        }
+        int color = player1 ? 1 : 2;
+        long own = position.pieces(color);
+        long enemies = position.pieces(3 - color);
+        long empty = position.empty();
+        long kings = own & position.kings;
+        long soldiers = own & ~position.kings;
+        long steps = color == 1 ? shift(soldiers, DIRECTIONS[0]) | shift(soldiers, DIRECTIONS[1])
+                : shift(soldiers, DIRECTIONS[2]) | shift(soldiers, DIRECTIONS[3]);
+        for (int direction : DIRECTIONS) {
+            steps |= shift(kings, direction);
+            if ((shift(shift(own, direction) & enemies, direction) & empty) != 0) {
+                return true;
+            }
+        }
+        return (steps & empty) != 0;
+    }
+
+    /**
+     * Moves every square of a mask one step in a direction. Squares leaving
+     * the board land on the padding bits or past the last square, which are
+     * never empty.
+     */
+    private static long shift(long squares, int direction) {
+        return direction > 0 ? squares << direction : squares >>> -direction;
+    }
+
+    /**
+     * Generates the captures of some pieces that start one of the longest
+     * capture sequences any of them can make.
+     *
+     * @param position The position
+     * @param color The color of the pieces
+     * @param pieces The squares of the pieces
+     * @param jumped The pieces already captured in the sequence under way
+     * @param moves The buffer the moves are written to
+     * @param count The number of moves already in the buffer
+     * @return The new number of moves in the buffer
+     */
+    static int longestCaptures(BitBoard position, int color, long pieces, long jumped, int[] moves, int count) {
+        long enemies = position.pieces(3 - color);
+        int first = count;
+        int best = 1;
+        for (long p = pieces; p != 0; p &= p - 1) {
+            int square = Long.numberOfTrailingZeros(p);
+            boolean king = position.isKing(square);
+            long occupied = (position.occupied() | jumped) & ~(1L << square);
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int[] ray = RAYS[square][d];
+                int k = king ? freeLength(square, d, occupied) : 0;
+                int landings = landings(square, d, k, king, occupied, enemies);
+                for (int j = 1; j <= landings; j++) {
+                    int to = ray[k + j];
+                    int length = 1 + longest(to, king, color, occupied, enemies & ~(1L << ray[k]));
+                    if (length > best) {
+                        best = length;
+                        count = first;
+                    }
+                    if (length == best) {
+                        // the sequence ends here if it cannot go on
+                        boolean crowned = !king && length == 1 && promotes(to, color);
+                        moves[count++] = Move.capture(square, to, ray[k], crowned);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the piece on a square can capture, without writing moves.
+     *
+     * @param position The position
+     * @param square The square of the piece
+     * @param color The color of the piece
+     * @return True if the piece has at least one capture
+     */
+    static boolean canCapture(BitBoard position, int square, int color) {
+        return canCapture(position, square, color, 0);
+    }
+
+    /**
+     * Checks whether the piece on a square can capture again in the middle
+     * of a capture sequence.
+     *
+     * @param position The position
+     * @param square The square of the piece
+     * @param color The color of the piece
+     * @param jumped The pieces already captured in the sequence, which
+     *               still block it
+     * @return True if the piece has at least one capture
+     */
+    static boolean canCapture(BitBoard position, int square, int color, long jumped) {
+        long enemies = position.pieces(3 - color);
+        long occupied = position.occupied() | jumped;
+        boolean king = position.isKing(square);
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            // a king may fly over empty squares to the piece it captures
+            int k = king ? freeLength(square, d, occupied) : 0;
+            if (landings(square, d, k, king, occupied, enemies) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates the non-capturing moves of the piece on a square.
+     *
+     * @param position The position
+     * @param square The square of the piece
+     * @param color The color of the piece
+     * @param moves The buffer the moves are written to
+     * @param count The number of moves already in the buffer
+     * @return The new number of moves in the buffer
+     */
+    static int quietMoves(BitBoard position, int square, int color, int[] moves, int count) {
+        if (position.isKing(square)) {
+            return kingMoves(position, square, moves, count);
+        }
+        return soldierMoves(position, square, color, moves, count);
+    }
+
+    /**
+     * Returns the number of squares a piece can land on by capturing the
+     * first piece along a ray. A soldier captures an adjacent enemy piece
+     * with an empty square right behind it; a flying king captures the
+     * first piece along the diagonal if it is an enemy, and may land on any
+     * empty square behind it up to the next piece or the edge of the board.
+     *
+     * @param square The square of the capturing piece
+     * @param d The index of the direction in DIRECTIONS
+     * @param k The index in the ray of the first piece, 0 for a soldier
+     * @param king Whether the capturing piece is a king
+     * @param occupied The squares that block the capturing piece
+     * @param enemies The pieces that can be captured
+     * @return The number of landing squares, which follow the captured
+     *         piece along the ray; 0 if there is no capture
+     */
+    private static int landings(int square, int d, int k, boolean king, long occupied, long enemies) {
+        int[] ray = RAYS[square][d];
+        if (k + 1 >= ray.length || (enemies & (1L << ray[k])) == 0 || (occupied & (1L << ray[k + 1])) != 0) {
+            return 0;
+        }
+        return king ? freeLength(ray[k], d, occupied) : 1;
+    }
+
+    /**
+     * Returns the number of pieces in the longest capture sequence a piece
+     * can go on with.
+     *
+     * @param square The square the piece has landed on
+     * @param king Whether the piece is a king
+     * @param color The color of the piece
+     * @param occupied The squares that block the piece, captured pieces
+     *                 included
+     * @param enemies The pieces not captured yet
+     * @return The number of further captures
+     */
+    private static int longest(int square, boolean king, int color, long occupied, long enemies) {
+        int best = 0;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            int[] ray = RAYS[square][d];
+            int k = king ? freeLength(square, d, occupied) : 0;
+            int landings = landings(square, d, k, king, occupied, enemies);
+            for (int j = 1; j <= landings; j++) {
+                int to = ray[k + j];
+                int length = 1 + longest(to, king, color, occupied, enemies & ~(1L << ray[k]));
+                best = Math.max(best, length);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Follows a capture sequence depth first and keeps it if it cannot be
+     * extended and is one of the longest so far. The turns kept start at
+     * start and all have as many hops; the hops of the sequence being
+     * followed are written right after the last of them, at end + 1, so a
+     * sequence that is kept is already in place.
+     *
+     * @param hops The number of hops played so far
+     * @return The index after the last turn kept
+     */
+    private static int extend(int[] turns, int start, int end, int square, boolean king, int color,
+            long occupied, long enemies, int hops) {
+        boolean extended = false;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            int[] ray = RAYS[square][d];
+            int k = king ? freeLength(square, d, occupied) : 0;
+            int landings = landings(square, d, k, king, occupied, enemies);
+            for (int j = 1; j <= landings; j++) {
+                int to = ray[k + j];
+                turns[end + 1 + hops] = Move.capture(square, to, ray[k], false);
+                end = extend(turns, start, end, to, king, color, occupied,
+                        enemies & ~(1L << ray[k]), hops + 1);
+                extended = true;
+            }
+        }
+        if (extended || hops == 0) {
+            return end;
+        }
+        int best = end > start ? turns[start] : 0;
+        if (hops < best) {
+            return end;
+        }
+        if (hops > best) {
+            // drop the shorter sequences kept so far
+            System.arraycopy(turns, end + 1, turns, start + 1, hops);
+            end = start;
+        } else {
+            for (int offset = start; offset < end; offset += hops + 1) {
+                if (sameTurn(turns, offset, end, hops)) {
+                    return end;
+                }
+            }
+        }
+        if (!king && promotes(square, color)) {
+            // crowned on the last hop only
+            int last = turns[end + hops];
+            turns[end + hops] = Move.capture(Move.from(last), square, Move.captured(last), true);
+        }
+        turns[end] = hops;
+        int next = end + hops + 1;
+        // the shorter sequences still to be followed share these hops
+        System.arraycopy(turns, end + 1, turns, next + 1, hops);
+        return next;
+    }
+
+    /**
+     * Checks whether two capture sequences with as many hops lead to the
+     * same position: same piece, same landing square and same captured
+     * pieces.
+     */
+    private static boolean sameTurn(int[] turns, int a, int b, int hops) {
+        if (Move.from(turns[a + 1]) != Move.from(turns[b + 1])
+                || Move.to(turns[a + hops]) != Move.to(turns[b + hops])) {
+            return false;
+        }
+        long captured = 0;
+        for (int k = 1; k <= hops; k++) {
+            captured ^= Move.capturedMask(turns[a + k]) ^ Move.capturedMask(turns[b + k]);
+        }
+        return captured == 0;
+    }
+
+    /**
+     * Generates soldier moves: one step forward to an empty square.
+     */
+    static int soldierMoves(BitBoard position, int square, int color, int[] moves, int count) {
+        long occupied = position.occupied();
+        int first = color == 1 ? 0 : 2;
+        for (int d = first; d < first + 2; d++) {
+            int[] ray = RAYS[square][d];
+            if (ray.length > 0 && (occupied & (1L << ray[0])) == 0) {
+                moves[count++] = Move.quiet(square, ray[0], promotes(ray[0], color));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates king moves: any number of steps along an empty diagonal.
+     */
+    static int kingMoves(BitBoard position, int square, int[] moves, int count) {
+        long occupied = position.occupied();
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            int[] ray = RAYS[square][d];
+            int length = freeLength(square, d, occupied);
+            for (int k = 0; k < length; k++) {
+                moves[count++] = Move.quiet(square, ray[k], false);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of empty squares along a ray before the first
+     * piece or the edge of the board. The first piece is found with a
+     * single bit scan of the ray's mask: the lowest bit on rays going down
+     * the board, the highest on rays going up.
+     *
+     * @param square The square the ray starts from
+     * @param d The index of the direction in DIRECTIONS
+     * @param occupied The occupied squares
+     * @return The number of squares, at most the length of the ray
+     */
+    static int freeLength(int square, int d, long occupied) {
+        long blockers = RAY_MASKS[square][d] & occupied;
+        if (blockers == 0) {
+            return RAYS[square][d].length;
+        }
+        int blocker = DIRECTIONS[d] > 0 ? Long.numberOfTrailingZeros(blockers)
+                : 63 - Long.numberOfLeadingZeros(blockers);
+        return (blocker - square) / DIRECTIONS[d] - 1;
+    }
+
+    /**
+     * Returns the squares from a square to the edge of the board in a
+     * direction, nearest first.
+     *
+     * @param square The square the ray starts from
+     * @param d The index of the direction in DIRECTIONS
+     * @return The squares; the array must not be modified
+     */
+    static int[] ray(int square, int d) {
+        return RAYS[square][d];
+    }
+
+    /**
+     * Checks whether a bit index is one of the 50 playable squares.
+     *
+     * @param square The bit index, possibly off the board
+     * @return True if the index is on the board
+     */
+    static boolean isSquare(int square) {
+        return square >= 0 && square < BitBoard.SIZE && (BitBoard.PLAYABLE & (1L << square)) != 0;
+    }
+
+    /**
+     * Checks whether a soldier of the given color landing on a square becomes a king.
+     */
+    static boolean promotes(int square, int color) {
+        return ((color == 1 ? PROMOTION_ROW_1 : PROMOTION_ROW_2) & (1L << square)) != 0;
+    }
+}
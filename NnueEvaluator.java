@@ -0,0 +1,110 @@
+package org.cis1200.checkers;
+
+/**
+ * Evaluation by an NnueNetwork, with the first layer kept up to date move
+ * by move.
+ *
+ * The evaluator holds the hidden layer of both views of the position (the
+ * accumulators). Adding or removing a piece adds or subtracts one weight
+ * row to each, so a move costs a few passes over short arrays and only
+ * the small output layer is computed at a leaf. All loops run over
+ * contiguous primitive arrays without branches so the JIT can vectorize
+ * them.
+ */
+final class NnueEvaluator implements Evaluator {
+    // feature of a piece seen from player 1 (0) or player 2 (1), indexed by
+    // (color - 1) * 2 + (king ? 1 : 0) and square
+    private static final int[][][] FEATURE = new int[2][4][BitBoard.SIZE];
+
+    static {
+        for (int square = 0; square < BitBoard.SIZE; square++) {
+            if (!BitBoard.isPlayable(square)) {
+                continue;
+            }
+            int number = BitBoard.number(square);
+            for (int piece = 0; piece < 4; piece++) {
+                int color = piece / 2 + 1;
+                int king = piece & 1;
+                // player 2 sees the board turned around, its own pieces first
+                FEATURE[0][piece][square] = ((color == 1 ? 0 : 2) + king) * 50 + number - 1;
+                FEATURE[1][piece][square] = ((color == 2 ? 0 : 2) + king) * 50 + 50 - number;
+            }
+        }
+    }
+
+    private final NnueNetwork network;
+    private final int hidden;
+    private final short[] player1View;
+    private final short[] player2View;
+
+    /**
+     * Creates an evaluator; see NnueNetwork.newEvaluator.
+     *
+     * @param network The network
+     */
+    NnueEvaluator(NnueNetwork network) {
+        this.network = network;
+        hidden = network.hidden;
+        player1View = new short[hidden];
+        player2View = new short[hidden];
+    }
+
+    @Override
+    public void reset(BitBoard position) {
+        System.arraycopy(network.featureBias, 0, player1View, 0, hidden);
+        System.arraycopy(network.featureBias, 0, player2View, 0, hidden);
+        for (long pieces = position.occupied(); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            add(square, position.colorAt(square), position.isKing(square));
+        }
+    }
+
+    @Override
+    public void add(int square, int color, boolean king) {
+        int piece = (color - 1) * 2 + (king ? 1 : 0);
+        addRow(player1View, FEATURE[0][piece][square] * hidden);
+        addRow(player2View, FEATURE[1][piece][square] * hidden);
+    }
+
+    @Override
+    public void remove(int square, int color, boolean king) {
+        int piece = (color - 1) * 2 + (king ? 1 : 0);
+        subtractRow(player1View, FEATURE[0][piece][square] * hidden);
+        subtractRow(player2View, FEATURE[1][piece][square] * hidden);
+    }
+
+    private void addRow(short[] view, int row) {
+        short[] weights = network.featureWeights;
+        for (int i = 0; i < hidden; i++) {
+            view[i] += weights[row + i];
+        }
+    }
+
+    private void subtractRow(short[] view, int row) {
+        short[] weights = network.featureWeights;
+        for (int i = 0; i < hidden; i++) {
+            view[i] -= weights[row + i];
+        }
+    }
+
+    @Override
+    public int evaluate(boolean player1) {
+        short[] weights = network.outputWeights;
+        int sum = network.outputBias
+                + dot(player1 ? player1View : player2View, weights, 0)
+                + dot(player1 ? player2View : player1View, weights, hidden);
+        return sum >> network.outputShift;
+    }
+
+    /**
+     * Sums a clipped hidden layer times a slice of the output weights.
+     */
+    private int dot(short[] view, short[] weights, int offset) {
+        int sum = 0;
+        for (int i = 0; i < hidden; i++) {
+            int activation = Math.min(Math.max(view[i], 0), NnueNetwork.ACTIVATION_MAX);
+            sum += activation * weights[offset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,168 @@
+package org.cis1200.checkers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * The quantized weights of a small efficiently updatable neural network
+ * (NNUE), shared by the NnueEvaluator of every search thread.
+ *
+ * The input is one feature per kind of piece (own man, own king, opposing
+ * man, opposing king) and square, seen from one side: the other side's view
+ * turns the board around and swaps the colors. The first layer maps the
+ * features of a view to a hidden layer of 16-bit sums; it is the only large
+ * layer, and a move only adds and subtracts a few of its rows. The two
+ * hidden layers, the side to move's first, are clipped to 0..127 and summed
+ * with the output weights into the score, shifted down to centipawn-like
+ * units.
+ *
+ * A weights file is a header (magic, version, hidden size, output shift)
+ * followed by the first layer biases, the first layer weights feature by
+ * feature, the output weights and the output bias, all big-endian.
+ */
+final class NnueNetwork {
+    static final int MAGIC = 0x434B4E4E;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int FEATURES = 4 * 50;
+    static final int ACTIVATION_MAX = 127;
+    // the most pieces a position can hold, bounding the hidden sums
+    static final int MAX_PIECES = 40;
+
+    final int hidden;
+    final int outputShift;
+    final short[] featureBias;
+    // row f holds the weights of feature f, hidden entries wide
+    final short[] featureWeights;
+    // the side to move's hidden layer first, then the opponent's
+    final short[] outputWeights;
+    final int outputBias;
+
+    /**
+     * Creates a network from its weights.
+     *
+     * @throws IllegalArgumentException if the sizes do not match or a hidden
+     *                                  sum could overflow 16 bits
+     */
+    NnueNetwork(int hidden, int outputShift, short[] featureBias, short[] featureWeights,
+            short[] outputWeights, int outputBias) {
+        if (hidden < 1 || outputShift < 0 || outputShift > 30 || featureBias.length != hidden
+                || featureWeights.length != FEATURES * hidden || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("bad network shape: " + hidden + " hidden");
+        }
+        for (int i = 0; i < hidden; i++) {
+            int largest = 0;
+            for (int f = 0; f < FEATURES; f++) {
+                largest = Math.max(largest, Math.abs(featureWeights[f * hidden + i]));
+            }
+            if (Math.abs(featureBias[i]) + MAX_PIECES * largest > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("hidden neuron " + i + " can overflow");
+            }
+        }
+        this.hidden = hidden;
+        this.outputShift = outputShift;
+        this.featureBias = featureBias;
+        this.featureWeights = featureWeights;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * @return A new evaluator using this network, for one search thread
+     */
+    NnueEvaluator newEvaluator() {
+        return new NnueEvaluator(this);
+    }
+
+    /**
+     * Creates a network with small random weights, for tests and
+     * benchmarks.
+     *
+     * @param hidden The size of the hidden layer
+     * @param seed The random seed
+     * @return The network
+     */
+    static NnueNetwork random(int hidden, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        short[] featureBias = new short[hidden];
+        short[] featureWeights = new short[FEATURES * hidden];
+        short[] outputWeights = new short[2 * hidden];
+        for (int i = 0; i < hidden; i++) {
+            featureBias[i] = (short) random.nextInt(-64, 65);
+        }
+        for (int k = 0; k < featureWeights.length; k++) {
+            featureWeights[k] = (short) random.nextInt(-32, 33);
+        }
+        for (int k = 0; k < outputWeights.length; k++) {
+            outputWeights[k] = (short) random.nextInt(-64, 65);
+        }
+        return new NnueNetwork(hidden, 6, featureBias, featureWeights, outputWeights, 0);
+    }
+
+    /**
+     * Reads a weights file.
+     *
+     * @param file The weights file
+     * @return The network
+     * @throws IOException if the file cannot be read or is not a network
+     */
+    static NnueNetwork load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Invalid network " + file);
+            }
+            int hidden = in.getInt();
+            int outputShift = in.getInt();
+            if (hidden < 1 || in.remaining() != (FEATURES + 3L) * hidden * 2 + 4) {
+                throw new IOException("Truncated network " + file);
+            }
+            short[] featureBias = new short[hidden];
+            short[] featureWeights = new short[FEATURES * hidden];
+            short[] outputWeights = new short[2 * hidden];
+            in.asShortBuffer().get(featureBias).get(featureWeights).get(outputWeights);
+            int outputBias = in.getInt(in.limit() - 4);
+            try {
+                return new NnueNetwork(hidden, outputShift, featureBias, featureWeights, outputWeights, outputBias);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid network " + file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the network to a weights file, replacing it atomically.
+     *
+     * @param file The weights file
+     * @throws IOException if the file cannot be written
+     */
+    void write(Path file) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + (FEATURES + 3) * hidden * 2 + 4);
+        out.putInt(MAGIC).putInt(VERSION).putInt(hidden).putInt(outputShift);
+        for (short weight : featureBias) {
+            out.putShort(weight);
+        }
+        for (short weight : featureWeights) {
+            out.putShort(weight);
+        }
+        for (short weight : outputWeights) {
+            out.putShort(weight);
+        }
+        out.putInt(outputBias).flip();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,88 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NnueTest {
+    private final NnueNetwork network = NnueNetwork.random(32, 3);
+
+    @Test
+    void testIncrementalMatchesReset() {
+        Checkers game = new Checkers();
+        Evaluator incremental = network.newEvaluator();
+        Evaluator fresh = network.newEvaluator();
+        SplittableRandom random = new SplittableRandom(11);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        incremental.reset(game.getPosition());
+        for (int ply = 0; ply < 200; ply++) {
+            int count = game.generateMoves(moves);
+            if (count == 0) {
+                break;
+            }
+            int move = moves[random.nextInt(count)];
+            incremental.makeMove(game.getPosition(), move);
+            game.makeMove(move);
+            fresh.reset(game.getPosition());
+            assertEquals(fresh.evaluate(game.player1), incremental.evaluate(game.player1));
+            assertEquals(fresh.evaluate(!game.player1), incremental.evaluate(!game.player1));
+        }
+    }
+
+    @Test
+    void testViewsAreSymmetric() {
+        // the same position with the colors swapped and the board turned
+        Evaluator evaluator = network.newEvaluator();
+        Checkers game = new Checkers();
+        game.setPosition("W:W31,K40,44:B13,K26");
+        evaluator.reset(game.getPosition());
+        int white = evaluator.evaluate(true);
+        int black = evaluator.evaluate(false);
+        game.setPosition("B:W38,K25:B7,20,K11");
+        evaluator.reset(game.getPosition());
+        assertEquals(white, evaluator.evaluate(false));
+        assertEquals(black, evaluator.evaluate(true));
+    }
+
+    @Test
+    void testWeightsFile() throws IOException {
+        Path file = Files.createTempFile("network", ".nnue");
+        file.toFile().deleteOnExit();
+        network.write(file);
+        NnueNetwork loaded = NnueNetwork.load(file);
+        Checkers game = new Checkers();
+        Evaluator original = network.newEvaluator();
+        Evaluator copy = loaded.newEvaluator();
+        original.reset(game.getPosition());
+        copy.reset(game.getPosition());
+        assertEquals(original.evaluate(true), copy.evaluate(true));
+        assertArrayEquals(network.featureWeights, loaded.featureWeights);
+        assertArrayEquals(network.outputWeights, loaded.outputWeights);
+        assertEquals(network.outputBias, loaded.outputBias);
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+        assertThrows(IOException.class, () -> NnueNetwork.load(file));
+    }
+
+    @Test
+    void testOverflowingWeightsRejected() {
+        short[] weights = new short[NnueNetwork.FEATURES];
+        weights[0] = 1000;
+        assertThrows(IllegalArgumentException.class,
+            () -> new NnueNetwork(1, 0, new short[1], weights, new short[2], 0));
+    }
+
+    @Test
+    void testSearchWithNetwork() {
+        Checkers game = new Checkers();
+        Search search = new Search(4, Long.MAX_VALUE, 3_600_000L, new TranspositionTable(1),
+                network.newEvaluator());
+        assertTrue(game.isLegal(search.findBestMove(game)));
+    }
+}
@@ -0,0 +1,141 @@
+package org.cis1200.checkers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Opening book read from a file built by OpeningBookBuilder.
+ *
+ * The file is a header followed by fixed-width entries sorted by position
+ * hash and move: the Zobrist hash of a position, a move (hop) played from
+ * it, the number of games that played it and the half-points those games
+ * scored for the side that played it. The file is memory-mapped and probed
+ * with a binary search on the hashes, so a lookup reads a few pages and
+ * allocates nothing.
+ */
+final class OpeningBook implements Closeable {
+    static final int MAGIC = 0x434B424B;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer entries;
+    private final int size;
+    private final int minGames;
+
+    /**
+     * Opens a book file.
+     *
+     * @param file The book file
+     * @param minGames The number of games a move needs to be played from the
+     *                 book
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    OpeningBook(Path file, int minGames) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.remaining() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                throw new IOException("Invalid opening book " + file);
+            }
+            long count = map.getLong(8);
+            if (count < 0 || count > (map.remaining() - HEADER_BYTES) / ENTRY_BYTES) {
+                throw new IOException("Truncated opening book " + file);
+            }
+            size = (int) count;
+            entries = map.position(HEADER_BYTES).slice();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.minGames = minGames;
+    }
+
+    /**
+     * @return The number of entries in the book
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the book move for a game: the legal move played in the most
+     * games from its position, ties going to the better scoring one.
+     *
+     * @param game The game
+     * @return The move, or Move.NONE if the position is not in the book
+     */
+    int probe(Checkers game) {
+        int move = probe(game.getHash());
+        // a hash collision must not make the AI play an illegal move
+        return move != Move.NONE && game.isLegal(move) ? move : Move.NONE;
+    }
+
+    /**
+     * Returns the book move for a position hash, see probe(Checkers).
+     *
+     * @param hash The Zobrist hash of the position
+     * @return The move, or Move.NONE if the position is not in the book
+     */
+    int probe(long hash) {
+        int best = Move.NONE;
+        int bestGames = 0;
+        int bestPoints = 0;
+        for (int k = find(hash); k < size && hash(k) == hash; k++) {
+            int offset = k * ENTRY_BYTES;
+            int games = entries.getInt(offset + 12);
+            int points = entries.getInt(offset + 16);
+            if (games >= minGames && (games > bestGames || (games == bestGames && points > bestPoints))) {
+                best = entries.getInt(offset + 8);
+                bestGames = games;
+                bestPoints = points;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the number of games that played a move from a position.
+     *
+     * @return The number of games, 0 if the move is not in the book
+     */
+    int games(long hash, int move) {
+        for (int k = find(hash); k < size && hash(k) == hash; k++) {
+            if (entries.getInt(k * ENTRY_BYTES + 8) == move) {
+                return entries.getInt(k * ENTRY_BYTES + 12);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the first entry whose hash is not less than a hash.
+     */
+    private int find(long hash) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long hash(int entry) {
+        return entries.getLong(entry * ENTRY_BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
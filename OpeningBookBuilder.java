@@ -0,0 +1,188 @@
+package org.cis1200.checkers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Builds an opening book file from games in PDN.
+ *
+ * The first plies of every game are replayed and each (position, move) pair
+ * is counted, along with the points the game scored for the side that made
+ * the move, in an open-addressing table. Moves played in fewer than a
+ * minimum number of games are dropped and the rest are written sorted by
+ * hash and move, the layout read by OpeningBook.
+ *
+ * Usage: OpeningBookBuilder games.pdn book.bin [plies] [minGames] [threads].
+ */
+public class OpeningBookBuilder {
+    private static final float MAX_LOAD = 0.5f;
+
+    private final int maxPlies;
+    private long[] hashes = new long[1 << 16];
+    private int[] moves = new int[1 << 16];
+    private int[] games = new int[1 << 16];
+    private int[] points = new int[1 << 16];
+    private int size;
+
+    /**
+     * Creates an empty builder.
+     *
+     * @param maxPlies The number of hops of each game that go into the book
+     */
+    OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: OpeningBookBuilder games.pdn book.bin [plies] [minGames] [threads]");
+            System.exit(1);
+        }
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int minGames = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        long start = System.nanoTime();
+        long read;
+        try (Reader in = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.ISO_8859_1)) {
+            read = PdnReader.readAll(in, threads, builder::add, e -> System.err.println(e.getMessage()));
+        }
+        int written = builder.write(Path.of(args[1]), minGames);
+        System.out.printf("%d games, %d positions and moves, %d written in %.3f s%n",
+                read, builder.size(), written, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Adds the opening of a game. Safe to call from several threads.
+     *
+     * @param game The game
+     */
+    void add(PdnGame game) {
+        Integer score = game.getScore();
+        // a game without a result counts as a draw
+        int white = score == null ? 1 : score + 1;
+        Checkers board = game.startPosition();
+        int[] hops = game.getMoves();
+        int plies = Math.min(maxPlies, hops.length);
+        long[] keys = new long[plies];
+        boolean[] player1 = new boolean[plies];
+        for (int k = 0; k < plies; k++) {
+            keys[k] = board.getHash();
+            player1[k] = board.player1;
+            board.makeMove(hops[k]);
+        }
+        synchronized (this) {
+            for (int k = 0; k < plies; k++) {
+                add(keys[k], hops[k], player1[k] ? white : 2 - white);
+            }
+        }
+    }
+
+    /**
+     * Counts one game playing a move from a position.
+     *
+     * @param points The half-points the game scored for the side to move
+     */
+    private void add(long hash, int move, int points) {
+        if (size + 1 > hashes.length * MAX_LOAD) {
+            grow();
+        }
+        int slot = slot(hash, move, hashes.length);
+        while (games[slot] != 0 && (hashes[slot] != hash || moves[slot] != move)) {
+            slot = (slot + 1) & (hashes.length - 1);
+        }
+        if (games[slot] == 0) {
+            hashes[slot] = hash;
+            moves[slot] = move;
+            size++;
+        }
+        games[slot]++;
+        this.points[slot] += points;
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        int[] oldMoves = moves;
+        int[] oldGames = games;
+        int[] oldPoints = points;
+        int capacity = oldHashes.length * 2;
+        hashes = new long[capacity];
+        moves = new int[capacity];
+        games = new int[capacity];
+        points = new int[capacity];
+        for (int k = 0; k < oldHashes.length; k++) {
+            if (oldGames[k] != 0) {
+                int slot = slot(oldHashes[k], oldMoves[k], capacity);
+                while (games[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                hashes[slot] = oldHashes[k];
+                moves[slot] = oldMoves[k];
+                games[slot] = oldGames[k];
+                points[slot] = oldPoints[k];
+            }
+        }
+    }
+
+    private static int slot(long hash, int move, int capacity) {
+        long mixed = (hash ^ move) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & (capacity - 1);
+    }
+
+    /**
+     * @return The number of distinct (position, move) pairs seen
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Writes the book, replacing the file atomically.
+     *
+     * @param file The book file
+     * @param minGames The number of games a move needs to be kept
+     * @return The number of entries written
+     * @throws IOException if the file cannot be written
+     */
+    synchronized int write(Path file, int minGames) throws IOException {
+        // sort the kept slots by hash, then move
+        int[] kept = new int[size];
+        int count = 0;
+        for (int k = 0; k < hashes.length; k++) {
+            if (games[k] >= Math.max(minGames, 1)) {
+                kept[count++] = k;
+            }
+        }
+        Integer[] order = new Integer[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = kept[k];
+        }
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b]
+                ? Long.compare(hashes[a], hashes[b]) : Integer.compare(moves[a], moves[b]));
+
+        ByteBuffer out = ByteBuffer.allocate(OpeningBook.HEADER_BYTES + count * OpeningBook.ENTRY_BYTES);
+        out.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(count);
+        for (int slot : order) {
+            out.putLong(hashes[slot]).putInt(moves[slot]).putInt(games[slot]).putInt(points[slot]);
+        }
+        out.flip();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+}
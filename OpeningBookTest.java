@@ -0,0 +1,72 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningBookTest {
+    private static final String GAMES = "1. 32-28 19-23 2. 28x19 14x23 2-0\n"
+            + "1. 32-28 19-23 2. 28x19 14x23 1-1\n"
+            + "1. 32-28 17-22 2. 28x17 11x22 0-2\n"
+            + "1. 31-27 17-22 *\n";
+
+    private static Path buildBook(int minGames) throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(20);
+        assertEquals(4, PdnReader.readAll(new StringReader(GAMES), 2, builder::add, e -> fail(e.getMessage())));
+        Path file = Files.createTempFile("book", ".bin");
+        file.toFile().deleteOnExit();
+        builder.write(file, minGames);
+        return file;
+    }
+
+    @Test
+    void testProbe() throws IOException {
+        try (OpeningBook book = new OpeningBook(buildBook(1), 1)) {
+            Checkers game = new Checkers();
+            // 32-28 was played in three games, 31-27 in one
+            int move = book.probe(game);
+            assertEquals(Move.quiet(BitBoard.fromNumber(32), BitBoard.fromNumber(28), false), move);
+            assertEquals(3, book.games(game.getHash(), move));
+
+            // 19-23 was played twice, 17-22 once
+            game.makeMove(move);
+            assertEquals(Move.quiet(BitBoard.fromNumber(19), BitBoard.fromNumber(23), false), book.probe(game));
+
+            game.makeMove(Move.quiet(BitBoard.fromNumber(16), BitBoard.fromNumber(21), false));
+            assertEquals(Move.NONE, book.probe(game));
+        }
+    }
+
+    @Test
+    void testMinGames() throws IOException {
+        Path file = buildBook(2);
+        try (OpeningBook book = new OpeningBook(file, 1)) {
+            // only the moves of the first two games are kept
+            assertEquals(4, book.size());
+        }
+        try (OpeningBook book = new OpeningBook(file, 4)) {
+            assertEquals(Move.NONE, book.probe(new Checkers()));
+        }
+    }
+
+    @Test
+    void testBookEngine() throws IOException {
+        BookEngine engine = new BookEngine(new OpeningBook(buildBook(1), 1),
+                new Search(4, Long.MAX_VALUE, 10_000, new TranspositionTable(1)));
+        Checkers game = new Checkers();
+        assertTrue(game.engineAI(engine));
+        assertTrue(engine.isBookMove());
+        assertEquals(0, engine.getNodes());
+
+        // out of the book the search takes over
+        game.makeMove(Move.quiet(BitBoard.fromNumber(16), BitBoard.fromNumber(21), false));
+        assertTrue(game.engineAI(engine));
+        assertFalse(engine.isBookMove());
+        assertTrue(engine.getNodes() > 0);
+        engine.shutdown();
+    }
+}
@@ -0,0 +1,205 @@
+package org.cis1200.checkers;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Multi-threaded search using Lazy SMP.
+ *
+ * Every thread runs its own Search on its own copy of the game, and all of
+ * them share one TranspositionTable. The threads search the same tree, but
+ * the results each one stores let the others skip or reorder work, so the
+ * main thread reaches a given depth sooner. Half of the helper threads start
+ * one iteration deeper so they do not all follow the main thread in step.
+ *
+ * The calling thread is the main thread; the helpers run on a fixed pool of
+ * daemon threads and are aborted as soon as the main thread finishes. The
+ * move of whichever search completed the deepest iteration is played.
+ */
+class ParallelSearch implements Engine {
+    private final Search[] searches;
+    private final TranspositionTable table;
+    private final ExecutorService pool;
+    private Search chosen;
+    // set by abort, so helpers started afterwards are aborted too
+    private volatile boolean aborted;
+
+    /**
+     * Creates an engine using all available processors, limited to 100 ms
+     * per move.
+     */
+    ParallelSearch() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine limited to 100 ms per move.
+     *
+     * @param threads The number of threads to search with
+     */
+    ParallelSearch(int threads) {
+        this(threads, HandcraftedEvaluator::new);
+    }
+
+    /**
+     * Creates an engine limited to 100 ms per move, scoring positions with
+     * its own kind of evaluator.
+     *
+     * @param threads The number of threads to search with
+     * @param evaluators Creates the evaluator of each thread
+     */
+    ParallelSearch(int threads, Supplier<Evaluator> evaluators) {
+        this(threads, Search.MAX_PLY / 2, Long.MAX_VALUE, 100,
+                new TranspositionTable(Search.DEFAULT_TABLE_MB * Math.max(1, threads)), evaluators);
+    }
+
+    /**
+     * Creates an engine with the given limits, which apply to each thread.
+     *
+     * @param threads The number of threads to search with
+     * @param maxDepth The deepest iteration to search
+     * @param nodeLimit The number of nodes after which a thread stops
+     * @param timeLimitMillis The time after which the search stops
+     * @param table The transposition table shared by the threads
+     */
+    ParallelSearch(int threads, int maxDepth, long nodeLimit, long timeLimitMillis,
+            TranspositionTable table) {
+        this(threads, maxDepth, nodeLimit, timeLimitMillis, table, HandcraftedEvaluator::new);
+    }
+
+    /**
+     * Creates an engine with the given limits and evaluators.
+     *
+     * @param threads The number of threads to search with
+     * @param maxDepth The deepest iteration to search
+     * @param nodeLimit The number of nodes after which a thread stops
+     * @param timeLimitMillis The time after which the search stops
+     * @param table The transposition table shared by the threads
+     * @param evaluators Creates the evaluator of each thread
+     */
+    ParallelSearch(int threads, int maxDepth, long nodeLimit, long timeLimitMillis,
+            TranspositionTable table, Supplier<Evaluator> evaluators) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.table = table;
+        searches = new Search[threads];
+        for (int k = 0; k < threads; k++) {
+            searches[k] = new Search(maxDepth, nodeLimit, timeLimitMillis, table, evaluators.get());
+        }
+        chosen = searches[0];
+        pool = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int findBestMove(Checkers game) {
+        table.newSearch();
+        Future<?>[] helpers = new Future<?>[searches.length];
+        int[] moves = new int[searches.length];
+        for (int k = 1; k < searches.length; k++) {
+            Search helper = searches[k];
+            Checkers copy = new Checkers(game);
+            int id = k;
+            // the helpers were stopped by the last search, not by abort
+            helper.clearAbort();
+            if (aborted) {
+                helper.abort();
+            }
+            helpers[k] = pool.submit(() -> {
+                moves[id] = helper.iterate(copy, 1 + (id & 1));
+            });
+        }
+        moves[0] = searches[0].iterate(game, 1);
+
+        for (int k = 1; k < searches.length; k++) {
+            searches[k].abort();
+        }
+        chosen = searches[0];
+        int best = moves[0];
+        for (int k = 1; k < searches.length; k++) {
+            try {
+                helpers[k].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("search thread failed", e.getCause());
+            }
+            if (searches[k].getDepth() > chosen.getDepth() && moves[k] != Move.NONE) {
+                chosen = searches[k];
+                best = moves[k];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Makes every thread score positions found in endgame tables from them.
+     *
+     * @param tablebase The tables, or null to search every position
+     */
+    void setTablebase(Tablebase tablebase) {
+        for (Search search : searches) {
+            search.setTablebase(tablebase);
+        }
+    }
+
+    /**
+     * @return The number of threads searching
+     */
+    int getThreads() {
+        return searches.length;
+    }
+
+    /**
+     * @return The number of nodes visited by all threads in the last search
+     */
+    @Override
+    public long getNodes() {
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    @Override
+    public int getDepth() {
+        return chosen.getDepth();
+    }
+
+    @Override
+    public int getScore() {
+        return chosen.getScore();
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+        for (Search search : searches) {
+            search.abort();
+        }
+    }
+
+    @Override
+    public void clearAbort() {
+        aborted = false;
+        for (Search search : searches) {
+            search.clearAbort();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.cis1200.checkers;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A game read from or written to Portable Draughts Notation.
+ *
+ * The moves are stored as the hops played through Checkers.movePiece, so a
+ * multi-jump is one entry per captured piece, starting from the position of
+ * the FEN tag (or the starting position when there is none).
+ */
+final class PdnGame {
+    static final String WHITE_WINS = "2-0";
+    static final String BLACK_WINS = "0-2";
+    static final String DRAW = "1-1";
+    static final String UNKNOWN = "*";
+
+    private final Map<String, String> tags;
+    private final int[] moves;
+    private final String result;
+
+    /**
+     * Creates a game.
+     *
+     * @param tags The tag pairs in file order, including FEN if the game does
+     *             not start from the starting position
+     * @param moves The hops of the game
+     * @param result The result, one of WHITE_WINS, BLACK_WINS, DRAW or UNKNOWN
+     */
+    PdnGame(Map<String, String> tags, int[] moves, String result) {
+        this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+        this.moves = moves;
+        this.result = result;
+    }
+
+    Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return The hops of the game; the array must not be modified
+     */
+    int[] getMoves() {
+        return moves;
+    }
+
+    String getResult() {
+        return result;
+    }
+
+    /**
+     * @return The result from white's (player 1's) point of view: 1 for a
+     *         win, 0 for a draw, -1 for a loss, or null if unknown
+     */
+    Integer getScore() {
+        switch (result) {
+            case WHITE_WINS:
+                return 1;
+            case BLACK_WINS:
+                return -1;
+            case DRAW:
+                return 0;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Sets up a game at the start position of this game.
+     *
+     * @return The new game
+     */
+    Checkers startPosition() {
+        Checkers game = new Checkers();
+        String fen = tags.get("FEN");
+        if (fen != null) {
+            game.setPosition(fen);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,445 @@
+package org.cis1200.checkers;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader of Portable Draughts Notation files.
+ *
+ * The input is read one game at a time, so memory does not grow with the
+ * size of the file. Each game is checked move by move: a move such as
+ * "32-28", "28x19" or "28x19x10" is matched against the legal moves, a
+ * capture being followed hop by hop (with make/unmake) until the turn
+ * passes, and is then played through Checkers.movePiece. Comments,
+ * variations, move strength marks and NAGs are skipped.
+ *
+ * readAll splits the file on the calling thread and parses the games on a
+ * number of worker threads through a bounded queue.
+ */
+class PdnReader implements Closeable {
+    // longest capture sequence searched for a move
+    private static final int MAX_HOPS = 32;
+    // marks the end of the input for the worker threads of readAll
+    private static final String END = new String();
+
+    private final BufferedReader in;
+    private final StringBuilder text = new StringBuilder();
+    private final int[][] buffers = new int[MAX_HOPS][MoveGenerator.MAX_MOVES];
+    private String pending;
+
+    /**
+     * Creates a reader.
+     *
+     * @param in The PDN text
+     */
+    PdnReader(Reader in) {
+        this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+    }
+
+    /**
+     * Reads and checks the next game.
+     *
+     * @return The game, or null at the end of the input
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the game is not valid PDN or has
+     *                                  an illegal move
+     */
+    PdnGame next() throws IOException {
+        String game = nextText();
+        return game == null ? null : parse(game);
+    }
+
+    /**
+     * Returns the text of the next game without parsing it. A game ends at
+     * its result or where the tags of the next game begin.
+     */
+    String nextText() throws IOException {
+        text.setLength(0);
+        boolean moves = false;
+        while (true) {
+            String line = pending != null ? pending : in.readLine();
+            pending = null;
+            if (line == null) {
+                return text.toString().isBlank() ? null : text.toString();
+            }
+            String trimmed = line.trim();
+            if (trimmed.startsWith("[")) {
+                if (moves) {
+                    pending = line;
+                    return text.toString();
+                }
+            } else if (!trimmed.isEmpty()) {
+                moves = true;
+            }
+            text.append(line).append('\n');
+            if (moves && endsWithResult(trimmed)) {
+                return text.toString();
+            }
+        }
+    }
+
+    private static boolean endsWithResult(String line) {
+        int space = line.lastIndexOf(' ');
+        return result(line.substring(space + 1)) != null;
+    }
+
+    /**
+     * Parses and checks one game.
+     *
+     * @param game The text of the game
+     * @return The game
+     * @throws IllegalArgumentException if the game is not valid
+     */
+    PdnGame parse(String game) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        Checkers board = null;
+        int[] moves = new int[64];
+        int size = 0;
+        String result = null;
+        int length = game.length();
+        int k = 0;
+        while (k < length) {
+            char c = game.charAt(k);
+            if (Character.isWhitespace(c)) {
+                k++;
+            } else if (c == '[') {
+                int end = game.indexOf(']', k);
+                if (end < 0 || board != null) {
+                    throw new IllegalArgumentException("Misplaced tag at " + k);
+                }
+                parseTag(game.substring(k + 1, end), tags);
+                k = end + 1;
+            } else if (c == '{') {
+                k = skipPast(game, k, '}');
+            } else if (c == ';') {
+                k = skipPast(game, k, '\n');
+            } else if (c == '(') {
+                int depth = 0;
+                do {
+                    char d = game.charAt(k);
+                    if (d == '{') {
+                        k = skipPast(game, k, '}') - 1;
+                    } else if (d == '(') {
+                        depth++;
+                    } else if (d == ')') {
+                        depth--;
+                    }
+                    k++;
+                } while (depth > 0 && k < length);
+            } else {
+                int end = k;
+                while (end < length && !Character.isWhitespace(game.charAt(end))
+                        && "{(;[".indexOf(game.charAt(end)) < 0) {
+                    end++;
+                }
+                String token = game.substring(k, end);
+                k = end;
+                if (board == null) {
+                    board = new Checkers();
+                    String fen = tags.get("FEN");
+                    if (fen != null) {
+                        board.setPosition(fen);
+                    }
+                }
+                if (result(token) != null) {
+                    result = result(token);
+                    break;
+                }
+                if (size > moves.length - MAX_HOPS) {
+                    moves = Arrays.copyOf(moves, moves.length * 2);
+                }
+                size = playToken(board, token, moves, size);
+                if (size == -1) {
+                    throw new IllegalArgumentException("Illegal move " + token + " in " + tags);
+                }
+            }
+        }
+        if (result == null) {
+            result = tags.containsKey("Result") && result(tags.get("Result")) != null
+                    ? result(tags.get("Result")) : PdnGame.UNKNOWN;
+        }
+        return new PdnGame(tags, Arrays.copyOf(moves, size), result);
+    }
+
+    private static void parseTag(String tag, Map<String, String> tags) {
+        int quote = tag.indexOf('"');
+        int last = tag.lastIndexOf('"');
+        if (quote < 0 || last == quote) {
+            throw new IllegalArgumentException("Invalid tag [" + tag + "]");
+        }
+        tags.put(tag.substring(0, quote).trim(), tag.substring(quote + 1, last));
+    }
+
+    private static int skipPast(String game, int k, char end) {
+        int found = game.indexOf(end, k + 1);
+        return found < 0 ? game.length() : found + 1;
+    }
+
+    /**
+     * Normalizes a result token.
+     *
+     * @return The result, or null if the token is not one
+     */
+    private static String result(String token) {
+        switch (token) {
+            case "2-0":
+            case "1-0":
+                return PdnGame.WHITE_WINS;
+            case "0-2":
+            case "0-1":
+                return PdnGame.BLACK_WINS;
+            case "1-1":
+                return PdnGame.DRAW;
+            case "0-0":
+            case "*":
+                return PdnGame.UNKNOWN;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Plays one token of move text, ignoring move numbers.
+     *
+     * @return The new number of hops, or -1 if the move is not legal
+     */
+    private int playToken(Checkers board, String token, int[] moves, int size) {
+        // drop move numbers ("12." or "12...") and strength marks ("!", "?")
+        int dot = token.lastIndexOf('.');
+        if (dot >= 0) {
+            token = token.substring(dot + 1);
+        }
+        int end = token.length();
+        while (end > 0 && (token.charAt(end - 1) == '!' || token.charAt(end - 1) == '?')) {
+            end--;
+        }
+        token = token.substring(0, end);
+        if (token.isEmpty() || token.charAt(0) == '$') {
+            return size;
+        }
+        boolean capture = token.indexOf('x') >= 0;
+        String[] parts = token.split(capture ? "x" : "-");
+        if (parts.length < 2 || (!capture && parts.length != 2)) {
+            throw new IllegalArgumentException("Invalid move " + token);
+        }
+        int[] squares = new int[parts.length];
+        for (int k = 0; k < parts.length; k++) {
+            int number;
+            try {
+                number = Integer.parseInt(parts[k]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid move " + token, e);
+            }
+            if (number < 1 || number > 50) {
+                throw new IllegalArgumentException("Invalid square in " + token);
+            }
+            squares[k] = BitBoard.fromNumber(number);
+        }
+        // a fully written capture must follow its landing squares exactly;
+        // otherwise the squares in between may be left out
+        int hops = findHops(board, squares, capture, true, squares[0], 1, 0, board.player1);
+        if (hops < 0 && capture) {
+            hops = findHops(board, squares, true, false, squares[0], 1, 0, board.player1);
+        }
+        if (hops < 0) {
+            return -1;
+        }
+        for (int k = 0; k < hops; k++) {
+            int move = buffers[k][0];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            if (!board.movePiece(BitBoard.row(from), BitBoard.col(from), BitBoard.row(to), BitBoard.col(to))) {
+                return -1;
+            }
+            moves[size++] = move;
+        }
+        return size;
+    }
+
+    /**
+     * Searches for the hops of one move, leaving hop k in buffers[k][0].
+     *
+     * @param squares The squares of the move
+     * @param exact Whether every hop must land on the next of the squares;
+     *              if not, landing squares in between are optional but must
+     *              come in order
+     * @param square The square the moving piece is on
+     * @param next The index in squares of the next landing square to match
+     * @param depth The number of hops played so far
+     * @param player1 The side making the move
+     * @return The number of hops, or -1 if there is no such move
+     */
+    private int findHops(Checkers board, int[] squares, boolean capture, boolean exact, int square, int next,
+            int depth, boolean player1) {
+        if (depth == MAX_HOPS) {
+            return -1;
+        }
+        int[] list = buffers[depth];
+        int count = board.generateMoves(list);
+        for (int k = 0; k < count; k++) {
+            int move = list[k];
+            if (Move.from(move) != square || Move.isCapture(move) != capture) {
+                continue;
+            }
+            int to = Move.to(move);
+            int last = squares.length - 1;
+            if (exact && to != squares[next]) {
+                continue;
+            }
+            int matched = next < last && to == squares[next] ? next + 1 : next;
+            board.makeMove(move);
+            int hops;
+            if (board.player1 == player1) {
+                hops = exact && matched == next ? -1
+                        : findHops(board, squares, capture, exact, to, matched, depth + 1, player1);
+            } else {
+                hops = matched == last && to == squares[last] ? depth + 1 : -1;
+            }
+            board.unmakeMove();
+            if (hops >= 0) {
+                list[0] = move;
+                return hops;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads every game of a stream on several threads.
+     *
+     * @param in The PDN text
+     * @param threads The number of threads parsing games
+     * @param games Receives each valid game, from any of the threads
+     * @param errors Receives the problem with each invalid game
+     * @return The number of valid games
+     * @throws IOException if the input cannot be read
+     * @throws InterruptedIOException if the thread is interrupted, in which
+     *         case only some of the games have been passed on
+     * @throws RuntimeException the first exception thrown by the parser or
+     *         the consumers, once every thread has finished
+     */
+    static long readAll(Reader in, int threads, Consumer<PdnGame> games,
+            Consumer<IllegalArgumentException> errors) throws IOException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(threads * 16);
+        AtomicLong valid = new AtomicLong();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int k = 0; k < threads; k++) {
+            workers[k] = new Thread(() -> {
+                PdnReader parser = new PdnReader(Reader.nullReader());
+                try {
+                    for (String text = queue.take(); text != END; text = queue.take()) {
+                        // after a failure the queue is still drained so the
+                        // reader never blocks on a full queue
+                        if (failure.get() != null) {
+                            continue;
+                        }
+                        try {
+                            try {
+                                games.accept(parser.parse(text));
+                                valid.incrementAndGet();
+                            } catch (IllegalArgumentException e) {
+                                errors.accept(e);
+                            }
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "pdn-reader-" + k);
+            workers[k].start();
+        }
+
+        try (PdnReader reader = new PdnReader(in)) {
+            for (String text = reader.nextText(); text != null; text = reader.nextText()) {
+                queue.put(text);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // also when the input fails, so no worker is left waiting
+            stopWorkers(workers, queue);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("interrupted after " + valid.get() + " valid games");
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return valid.get();
+    }
+
+    /**
+     * Lets the workers of readAll finish the queued texts and waits for
+     * them. If the calling thread is interrupted the workers are
+     * interrupted instead, and the interrupt is kept.
+     */
+    private static void stopWorkers(Thread[] workers, BlockingQueue<String> queue) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            for (int k = 0; k < workers.length && !interrupted; k++) {
+                queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        for (Thread worker : workers) {
+            if (interrupted) {
+                worker.interrupt();
+            }
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    worker.interrupt();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Checks every game of a PDN file and reports the throughput.
+     *
+     * Usage: PdnReader file [threads].
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        AtomicLong moves = new AtomicLong();
+        AtomicLong invalid = new AtomicLong();
+        long start = System.nanoTime();
+        long games = readAll(Files.newBufferedReader(Path.of(args[0]), StandardCharsets.ISO_8859_1), threads,
+                game -> moves.addAndGet(game.getMoves().length),
+                e -> {
+                    invalid.incrementAndGet();
+                    System.err.println(e.getMessage());
+                });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d invalid, %d hops%n", games, invalid.get(), moves.get());
+        System.out.printf("%.3f s, %.0f games/sec, %.0f hops/sec%n", seconds, games / seconds, moves.get() / seconds);
+    }
+}
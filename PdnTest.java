@@ -0,0 +1,140 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdnTest {
+    private static final String GAMES = "[Event \"Test\"]\n"
+            + "[White \"A\"]\n"
+            + "[Black \"B\"]\n"
+            + "[Result \"1-1\"]\n"
+            + "\n"
+            + "1. 32-28 19-23 {an exchange} 2. 28x19 14x23 (2... 13x24 3. 30x19) 3. 33-28! $1 23x32\n"
+            + "4. 37x28 1-1\n"
+            + "\n"
+            + "[Event \"Test\"]\n"
+            + "[FEN \"W:W24:B7,8,19\"]\n"
+            + "\n"
+            + "1. 24x13x2x11 2-0\n";
+
+    @Test
+    void testReadGames() throws IOException {
+        PdnReader reader = new PdnReader(new StringReader(GAMES));
+        PdnGame first = reader.next();
+        assertEquals("Test", first.getTags().get("Event"));
+        assertEquals(PdnGame.DRAW, first.getResult());
+        assertEquals(7, first.getMoves().length);
+        Checkers game = first.startPosition();
+        for (int move : first.getMoves()) {
+            game.makeMove(move);
+        }
+        assertEquals("B:W28,31,34,35,36,38,39,40,41,42,43,44,45,46,47,48,49,50"
+                + ":B1,2,3,4,5,6,7,8,9,10,11,12,13,15,16,17,18,20", game.getFen());
+
+        // a triple jump passing over the far row, given with every landing
+        // square
+        PdnGame second = reader.next();
+        assertEquals(3, second.getMoves().length);
+        assertEquals(Integer.valueOf(1), second.getScore());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testIllegalMove() {
+        PdnReader reader = new PdnReader(new StringReader("1. 32-22 *\n"));
+        assertThrows(IllegalArgumentException.class, reader::next);
+        // a capture is mandatory
+        reader = new PdnReader(new StringReader("1. 32-28 19-23 2. 31-27 *\n"));
+        assertThrows(IllegalArgumentException.class, reader::next);
+    }
+
+    @Test
+    void testWriteReadRoundTrip() throws IOException {
+        // random games exercise captures, promotions and king moves
+        StringWriter text = new StringWriter();
+        List<PdnGame> games = new ArrayList<>();
+        try (PdnWriter writer = new PdnWriter(text)) {
+            SplittableRandom random = new SplittableRandom(7);
+            for (int k = 0; k < 20; k++) {
+                Checkers game = new Checkers();
+                int[] moves = new int[400];
+                int size = 0;
+                for (int move = game.randomMove(random); move != Move.NONE && size < moves.length;
+                        move = game.randomMove(random)) {
+                    game.makeMove(move);
+                    moves[size++] = move;
+                }
+                Map<String, String> tags = new LinkedHashMap<>();
+                tags.put("Round", String.valueOf(k));
+                PdnGame pdn = new PdnGame(tags, Arrays.copyOf(moves, size),
+                        size == moves.length ? PdnGame.UNKNOWN : game.player1 ? PdnGame.BLACK_WINS : PdnGame.WHITE_WINS);
+                games.add(pdn);
+                writer.write(pdn);
+            }
+        }
+
+        PdnReader reader = new PdnReader(new StringReader(text.toString()));
+        for (PdnGame expected : games) {
+            PdnGame actual = reader.next();
+            assertEquals(expected.getTags().get("Round"), actual.getTags().get("Round"));
+            assertEquals(expected.getResult(), actual.getResult());
+            assertArrayEquals(expected.getMoves(), actual.getMoves());
+        }
+        assertNull(reader.next());
+
+        List<PdnGame> parallel = Collections.synchronizedList(new ArrayList<>());
+        List<IllegalArgumentException> errors = Collections.synchronizedList(new ArrayList<>());
+        assertEquals(20, PdnReader.readAll(new StringReader(text.toString() + "1. 32-22 *\n"), 3,
+                parallel::add, errors::add));
+        assertEquals(20, parallel.size());
+        assertEquals(1, errors.size());
+
+        // a failing consumer does not leave the reader blocked on the queue
+        assertThrows(IllegalStateException.class, () -> PdnReader.readAll(new StringReader(text.toString()), 1,
+                game -> {
+                    throw new IllegalStateException();
+                }, errors::add));
+
+        // nor does input that fails half way
+        Reader failing = new Reader() {
+            private boolean read;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                if (read) {
+                    throw new IOException("disk gone");
+                }
+                read = true;
+                String start = GAMES.substring(0, GAMES.indexOf("[Event", 1));
+                start.getChars(0, start.length(), buffer, offset);
+                return start.length();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertThrows(IOException.class, () -> PdnReader.readAll(failing, 2, parallel::add, errors::add));
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().startsWith("pdn-reader-")));
+
+        // an interrupted read reports that it is incomplete
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedIOException.class, () -> PdnReader.readAll(new StringReader(text.toString()), 2,
+                parallel::add, errors::add));
+        assertTrue(Thread.interrupted());
+    }
+}
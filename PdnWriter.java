@@ -0,0 +1,104 @@
+package org.cis1200.checkers;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Streaming writer of Portable Draughts Notation files.
+ *
+ * Games are written one at a time as tag pairs followed by numbered move
+ * text. The hops of a capture are joined into one move listing every
+ * landing square ("28x19x10"), which identifies the captured pieces even
+ * for flying kings.
+ */
+class PdnWriter implements Closeable, Flushable {
+    private static final int LINE_LENGTH = 79;
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Creates a writer.
+     *
+     * @param out Where to write the PDN text
+     */
+    PdnWriter(Writer out) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+    }
+
+    /**
+     * Writes one game. The Result tag is added if the game has none.
+     *
+     * @param game The game
+     * @throws IOException if the output cannot be written
+     * @throws IllegalArgumentException if the moves are not legal
+     */
+    void write(PdnGame game) throws IOException {
+        for (Map.Entry<String, String> tag : game.getTags().entrySet()) {
+            out.write("[" + tag.getKey() + " \"" + tag.getValue() + "\"]\n");
+        }
+        if (!game.getTags().containsKey("Result")) {
+            out.write("[Result \"" + game.getResult() + "\"]\n");
+        }
+        out.write('\n');
+
+        Checkers board = game.startPosition();
+        int[] moves = game.getMoves();
+        int number = 1;
+        line.setLength(0);
+        StringBuilder move = new StringBuilder();
+        for (int k = 0; k < moves.length; ) {
+            boolean player1 = board.player1;
+            move.setLength(0);
+            if (player1) {
+                move.append(number).append(". ");
+            } else if (k == 0) {
+                move.append(number).append("... ");
+            }
+            move.append(BitBoard.number(Move.from(moves[k])));
+            // every hop by the same side belongs to this move
+            do {
+                int hop = moves[k++];
+                int from = Move.from(hop);
+                int to = Move.to(hop);
+                if (!board.movePiece(BitBoard.row(from), BitBoard.col(from), BitBoard.row(to), BitBoard.col(to))) {
+                    throw new IllegalArgumentException("Illegal move " + Move.toString(hop));
+                }
+                move.append(Move.isCapture(hop) ? 'x' : '-').append(BitBoard.number(to));
+            } while (k < moves.length && board.player1 == player1);
+            if (!player1) {
+                number++;
+            }
+            append(move);
+        }
+        append(game.getResult());
+        out.write(line.toString());
+        out.write("\n\n");
+    }
+
+    private void append(CharSequence token) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+            out.write(line.toString());
+            out.write('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(token);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,35 @@
+package org.cis1200.checkers;
+
+import java.util.Map;
+
+/**
+ * Command line perft runner, used to check the move generator and to
+ * measure its throughput.
+ *
+ * Usage: Perft depth [fen]. Without a FEN the starting position is used.
+ */
+public class Perft {
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        if (depth < 1) {
+            System.err.println("usage: Perft depth [fen], with depth at least 1");
+            System.exit(1);
+        }
+        Checkers game = new Checkers();
+        if (args.length > 1) {
+            game.setPosition(args[1]);
+        }
+        System.out.println(game.getFen());
+
+        long start = System.nanoTime();
+        long total = 0;
+        for (Map.Entry<String, Long> entry : game.divide(depth).entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("perft(" + depth + ") = " + total);
+        System.out.printf("%.3f s, %.0f nodes/sec%n", elapsed / 1e9, total / (elapsed / 1e9));
+    }
+}
@@ -0,0 +1,91 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftTest {
+    // reference positions: FEN, depth, expected leaf count; a leaf is a
+    // whole turn, so a multi-capture is one move
+    private static final Object[][] POSITIONS = {
+        // starting position
+        {"W:W31-50:B1-20", 1, 9L},
+        {"W:W31-50:B1-20", 2, 81L},
+        {"W:W31-50:B1-20", 3, 658L},
+        {"W:W31-50:B1-20", 4, 4265L},
+        {"W:W31-50:B1-20", 5, 27117L},
+        {"W:W31-50:B1-20", 6, 167140L},
+        // black to move with a forced double jump
+        {"B:W22,31-35,37-50:B1-16,18,19,21,25", 3, 57L},
+        {"B:W22,31-35,37-50:B1-16,18,19,21,25", 5, 2368L},
+        {"B:W22,31-35,37-50:B1-16,18,19,21,25", 6, 15804L},
+        // crowded middlegame after 40 random plies
+        {"W:W26,29,33-35,38-41,43,45-47,49,50:B2-4,6,9,10,12,14,20,21,25", 4, 164L},
+        {"W:W26,29,33-35,38-41,43,45-47,49,50:B2-4,6,9,10,12,14,20,21,25", 6, 11671L},
+        // Woldouby's position, full of long and forced captures
+        {"W:W25,27,28,30,32,33,34,35,37,38:B12,13,14,16,18,19,21,23,24,26", 9, 22369L},
+        {"W:W25,27,28,30,32,33,34,35,37,38:B12,13,14,16,18,19,21,23,24,26", 10, 88050L},
+        // triple jump that passes over the far row halfway and ends as a
+        // soldier
+        {"W:W24:B7,8,19", 1, 1L},
+        {"W:W24:B7,8,19", 2, 0L},
+        // king endgames
+        {"W:WK1,K50,33:BK10,K45,18", 3, 90L},
+        {"W:WK1,K50,33:BK10,K45,18", 5, 11593L},
+        {"B:WK6,K28,K47:BK3,K30,K43", 3, 10599L},
+        {"B:WK6,K28,K47:BK3,K30,K43", 4, 203212L},
+        {"W:W24,K42:B7,8,13,19,29", 1, 1L},
+        {"W:W24,K42:B7,8,13,19,29", 5, 1898L},
+        {"W:W24,K42:B7,8,13,19,29", 6, 10573L},
+    };
+
+    private Checkers game;
+
+    @BeforeEach
+    void setUp() {
+        game = new Checkers();
+    }
+
+    @Test
+    void testReferencePositions() {
+        for (Object[] position : POSITIONS) {
+            game.setPosition((String) position[0]);
+            assertEquals((long) position[2], game.perft((int) position[1]),
+                    position[0] + " depth " + position[1]);
+        }
+    }
+
+    @Test
+    void testDivideMatchesPerft() {
+        game.setPosition("W:W24,K42:B7,8,13,19,29");
+        long total = 0;
+        for (Map.Entry<String, Long> entry : game.divide(5).entrySet()) {
+            total += entry.getValue();
+        }
+        assertEquals(game.perft(5), total);
+        assertTrue(game.divide(0).isEmpty());
+    }
+
+    @Test
+    void testPerftRestoresPosition() {
+        game.setPosition("B:WK6,K28,K47:BK3,K30,K43");
+        String fen = game.getFen();
+        game.perft(3);
+        assertEquals(fen, game.getFen());
+        assertEquals(0, game.getMoveHistory().length);
+    }
+
+    @Test
+    void testFenRoundTrip() {
+        assertEquals("W:W31,32,33,34,35,36,37,38,39,40,41,42,43,44,45,46,47,48,49,50"
+                + ":B1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20", game.getFen());
+        game.setPosition("B:WK6,28:B3,K30");
+        assertEquals("B:WK6,28:B3,K30", game.getFen());
+        assertFalse(game.player1);
+        assertEquals(2, game.numPlayer1);
+        assertTrue(game.getPiece(BitBoard.row(BitBoard.fromNumber(30)), BitBoard.col(BitBoard.fromNumber(30)))
+                instanceof KingPiece);
+    }
+}
@@ -0,0 +1,104 @@
+package org.cis1200.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Counts how often each position has occurred, keyed by Zobrist hash.
+ *
+ * An open-addressing table with linear probing: adding, removing and
+ * counting a position take constant time on average, so the game can keep
+ * it up to date on every make and unmake. Removing uses backward-shift
+ * deletion so no tombstones build up during a search.
+ */
+final class RepetitionTable {
+    private long[] keys;
+    // 0 marks an empty slot
+    private int[] counts;
+    private int size;
+
+    RepetitionTable() {
+        keys = new long[256];
+        counts = new int[256];
+    }
+
+    /**
+     * Records one more occurrence of a position.
+     *
+     * @param hash The hash of the position
+     */
+    void add(long hash) {
+        if (size * 2 >= keys.length) {
+            grow();
+        }
+        int slot = find(hash);
+        if (counts[slot] == 0) {
+            keys[slot] = hash;
+            size++;
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * Takes back one occurrence of a position, if it was recorded.
+     *
+     * @param hash The hash of the position
+     */
+    void remove(long hash) {
+        int slot = find(hash);
+        if (counts[slot] == 0 || --counts[slot] > 0) {
+            return;
+        }
+        size--;
+        int mask = keys.length - 1;
+        // move later entries of the probe run back into the hole
+        for (int next = (slot + 1) & mask; counts[next] != 0; next = (next + 1) & mask) {
+            int home = home(keys[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                counts[slot] = counts[next];
+                counts[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    /**
+     * @param hash The hash of the position
+     * @return The number of times the position has occurred
+     */
+    int count(long hash) {
+        return counts[find(hash)];
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private int find(long hash) {
+        int mask = keys.length - 1;
+        int slot = home(hash);
+        while (counts[slot] != 0 && keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldCounts[k] != 0) {
+                int slot = find(oldKeys[k]);
+                keys[slot] = oldKeys[k];
+                counts[slot] = oldCounts[k];
+            }
+        }
+    }
+}
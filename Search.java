@@ -0,0 +1,472 @@
+package org.cis1200.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Alpha-beta game tree search used by the AI player.
+ *
+ * The engine runs a negamax search with iterative deepening on a Checkers
+ * game through makeMove/unmakeMove, so the game is left exactly as it was
+ * found. Every move searched is a whole turn (see Checkers.generateTurns):
+ * a capture sequence is played hop by hop and only then does the other
+ * player get a node, so a multi-capture costs one node and one ply like
+ * any other move. Captures are mandatory, so quiescence only looks at
+ * captures. The move returned is the first hop of the best turn, which is
+ * what movePiece takes; the rest of the sequence is found again when the
+ * engine is asked about the position after it.
+ *
+ * Leaves are scored by an Evaluator (HandcraftedEvaluator by default),
+ * which is told about every move made and taken back so it never has to
+ * look at the whole board.
+ *
+ * Results are kept in a TranspositionTable keyed by the position's Zobrist
+ * hash, which both cuts off positions reached again through another move
+ * order and supplies the first move to try. Other moves are ordered
+ * promotions and king captures first, then the two killer moves of the ply,
+ * then by the history heuristic. The search can be limited by depth, by
+ * nodes and by time; the best move of the last completed iteration is
+ * returned.
+ *
+ * With a Tablebase, positions in the endgame tables are scored from them
+ * instead of being searched. A table win scores below a found win, plus the
+ * material, so the search still heads for captures and crowning.
+ */
+class Search implements Engine {
+    static final int INFINITY = 1_000_000;
+    // score of a won position, reduced by the distance to the win
+    static final int WIN = 100_000;
+    static final int MAX_PLY = 128;
+
+    static final int DEFAULT_TABLE_MB = 16;
+    // score of a position the endgame tables say is won, before material
+    static final int TABLEBASE_WIN = WIN / 2;
+
+    private final int maxDepth;
+    private final long nodeLimit;
+    private final long timeLimitMillis;
+    private final TranspositionTable table;
+    private final Evaluator evaluator;
+    private Tablebase tablebase;
+
+    // the turns of each ply of the current line, stacked one ply after the
+    // other; moves holds the offsets in turns of the turns of each ply
+    private int[] turns = new int[MoveGenerator.MAX_TURN_INTS * 4];
+    private final int[] turnsEnd = new int[MAX_PLY];
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[] history = new int[BitBoard.SIZE * BitBoard.SIZE];
+
+    private long nodes;
+    private long deadline;
+    private boolean stopped;
+    // set from another thread to stop the search, until clearAbort
+    private volatile boolean aborted;
+    private int rootBest;
+    private int bestScore;
+    private int completedDepth;
+
+    /**
+     * Creates an engine limited to 100 ms per move.
+     */
+    Search() {
+        this(MAX_PLY / 2, Long.MAX_VALUE, 100);
+    }
+
+    /**
+     * Creates an engine with the given limits and its own transposition table.
+     *
+     * @param maxDepth The deepest iteration to search
+     * @param nodeLimit The number of nodes after which the search stops
+     * @param timeLimitMillis The time after which the search stops
+     */
+    Search(int maxDepth, long nodeLimit, long timeLimitMillis) {
+        this(maxDepth, nodeLimit, timeLimitMillis, new TranspositionTable(DEFAULT_TABLE_MB));
+    }
+
+    /**
+     * Creates an engine with the given limits.
+     *
+     * @param maxDepth The deepest iteration to search
+     * @param nodeLimit The number of nodes after which the search stops
+     * @param timeLimitMillis The time after which the search stops
+     * @param table The transposition table to use, possibly shared
+     */
+    Search(int maxDepth, long nodeLimit, long timeLimitMillis, TranspositionTable table) {
+        this(maxDepth, nodeLimit, timeLimitMillis, table, new HandcraftedEvaluator());
+    }
+
+    /**
+     * Creates an engine with the given limits and evaluation.
+     *
+     * @param maxDepth The deepest iteration to search
+     * @param nodeLimit The number of nodes after which the search stops
+     * @param timeLimitMillis The time after which the search stops
+     * @param table The transposition table to use, possibly shared
+     * @param evaluator The evaluation, used by this engine only
+     */
+    Search(int maxDepth, long nodeLimit, long timeLimitMillis, TranspositionTable table, Evaluator evaluator) {
+        this.maxDepth = Math.min(maxDepth, MAX_PLY / 2);
+        this.nodeLimit = nodeLimit;
+        this.timeLimitMillis = timeLimitMillis;
+        this.table = table;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Makes the search score positions found in endgame tables from them.
+     *
+     * @param tablebase The tables, or null to search every position
+     */
+    void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    @Override
+    public int findBestMove(Checkers game) {
+        table.newSearch();
+        return iterate(game, 1);
+    }
+
+    /**
+     * Runs iterative deepening from the given depth without starting a new
+     * table generation, so several searches can share one table.
+     *
+     * @param game The game to search, restored before returning
+     * @param firstDepth The first iteration to search
+     * @return The best move, or Move.NONE if the player has no legal move
+     */
+    int iterate(Checkers game, int firstDepth) {
+        nodes = 0;
+        stopped = false;
+        deadline = System.nanoTime() + timeLimitMillis * 1_000_000L;
+        completedDepth = 0;
+        bestScore = 0;
+        for (int[] killer : killers) {
+            killer[0] = Move.NONE;
+            killer[1] = Move.NONE;
+        }
+        for (int k = 0; k < history.length; k++) {
+            history[k] /= 2;
+        }
+        evaluator.reset(game.getPosition());
+
+        int count = generateTurns(game, 0);
+        if (count == 0) {
+            return Move.NONE;
+        }
+        int best = turns[moves[0][0] + 1];
+        if (count == 1) {
+            return best;
+        }
+        // an abort before or between iterations keeps the best move so far
+        for (int depth = Math.min(firstDepth, maxDepth); depth <= maxDepth && !aborted; depth++) {
+            rootBest = best;
+            int score = search(game, depth, -INFINITY, INFINITY, 0);
+            if (stopped) {
+                break;
+            }
+            best = rootBest;
+            bestScore = score;
+            completedDepth = depth;
+            if (Math.abs(score) >= WIN - MAX_PLY) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public void clearAbort() {
+        aborted = false;
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public int getDepth() {
+        return completedDepth;
+    }
+
+    @Override
+    public int getScore() {
+        return bestScore;
+    }
+
+    private int search(Checkers game, int depth, int alpha, int beta, int ply) {
+        if (depth <= 0) {
+            return quiesce(game, alpha, beta, ply);
+        }
+        if (checkLimits()) {
+            return 0;
+        }
+        // a position repeated once in the tree can be repeated again, so it
+        // is scored as the draw it leads to
+        if (ply > 0 && (game.getRepetitions() > 1 || game.isDraw())) {
+            return 0;
+        }
+        long hash = game.getHash();
+        long entry = table.probe(hash);
+        int tableMove = Move.NONE;
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        if (tablebase != null && ply > 0) {
+            int value = tablebase.probe(game);
+            if (value != Tablebase.UNKNOWN) {
+                return tablebaseScore(game, value, ply);
+            }
+        }
+        int[] list = moves[ply];
+        int count = generateTurns(game, ply);
+        if (count == 0) {
+            return -WIN + ply;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(game.player1);
+        }
+        scoreMoves(game, list, scores[ply], count, ply, tableMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int k = 0; k < count; k++) {
+            int turn = nextMove(list, scores[ply], k, count);
+            int move = turns[turn + 1];
+            makeTurn(game, turn);
+            int score = -search(game, depth - 1, -beta, -alpha, ply + 1);
+            unmakeTurn(game, turn);
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootBest = move;
+                }
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    if (!Move.isCapture(move)) {
+                        storeKiller(move, ply);
+                        history[Move.from(move) * BitBoard.SIZE + Move.to(move)] += depth * depth;
+                    }
+                    break;
+                }
+            }
+        }
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(hash, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Scores a position whose value is known from the endgame tables.
+     */
+    private int tablebaseScore(Checkers game, int value, int ply) {
+        if (value == Tablebase.WIN) {
+            return TABLEBASE_WIN + evaluator.evaluate(game.player1) - ply;
+        }
+        if (value == Tablebase.LOSS) {
+            return -TABLEBASE_WIN + evaluator.evaluate(game.player1) + ply;
+        }
+        return 0;
+    }
+
+    /**
+     * Converts a win score to be relative to the stored position rather than
+     * the root, so it stays correct when the position is reached at another ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -WIN + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -WIN + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Resolves pending captures before evaluating. Capturing is mandatory,
+     * so there is no stand-pat score while a capture is available.
+     */
+    private int quiesce(Checkers game, int alpha, int beta, int ply) {
+        if (checkLimits()) {
+            return 0;
+        }
+        int[] list = moves[ply];
+        int count = generateTurns(game, ply);
+        if (count == 0) {
+            return -WIN + ply;
+        }
+        if (!Move.isCapture(turns[list[0] + 1]) || ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(game.player1);
+        }
+        scoreMoves(game, list, scores[ply], count, ply, Move.NONE);
+
+        int best = -INFINITY;
+        for (int k = 0; k < count; k++) {
+            int turn = nextMove(list, scores[ply], k, count);
+            makeTurn(game, turn);
+            int score = -quiesce(game, -beta, -alpha, ply + 1);
+            unmakeTurn(game, turn);
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes the turns of the side to move at a ply on top of those of the
+     * plies before it.
+     *
+     * @return The number of turns, whose offsets are in moves[ply]
+     */
+    private int generateTurns(Checkers game, int ply) {
+        int start = ply == 0 ? 0 : turnsEnd[ply - 1];
+        if (turns.length < start + MoveGenerator.MAX_TURN_INTS) {
+            turns = Arrays.copyOf(turns, Math.max(turns.length * 2, start + MoveGenerator.MAX_TURN_INTS));
+        }
+        int end = game.generateTurns(turns, start);
+        turnsEnd[ply] = end;
+        int[] list = moves[ply];
+        int count = 0;
+        for (int offset = start; offset < end; offset += turns[offset] + 1) {
+            list[count++] = offset;
+        }
+        return count;
+    }
+
+    /**
+     * Plays the hops of a turn, telling the evaluator about each.
+     */
+    private void makeTurn(Checkers game, int turn) {
+        for (int k = 1; k <= turns[turn]; k++) {
+            evaluator.makeMove(game.getPosition(), turns[turn + k]);
+            game.makeMove(turns[turn + k]);
+        }
+    }
+
+    /**
+     * Takes back the hops of a turn played with makeTurn.
+     */
+    private void unmakeTurn(Checkers game, int turn) {
+        for (int k = turns[turn]; k >= 1; k--) {
+            game.unmakeMove();
+            evaluator.unmakeMove(game.getPosition(), turns[turn + k]);
+        }
+    }
+
+    /**
+     * Scores the turns of a ply for move ordering. A turn is known by its
+     * first hop to the transposition table, the killers and the history.
+     */
+    private void scoreMoves(Checkers game, int[] list, int[] moveScores, int count, int ply, int tableMove) {
+        BitBoard position = game.getPosition();
+        for (int k = 0; k < count; k++) {
+            int turn = list[k];
+            int move = turns[turn + 1];
+            int score;
+            if ((ply == 0 && move == rootBest) || move == tableMove) {
+                score = 1 << 30;
+            } else if (Move.isCapture(move)) {
+                // every capture of a position takes as many pieces, so
+                // prefer those taking kings, then those crowning
+                score = 1 << 25;
+                for (int j = 1; j <= turns[turn]; j++) {
+                    int hop = turns[turn + j];
+                    if (position.isKing(Move.captured(hop))) {
+                        score += 1 << 18;
+                    }
+                    if (Move.isPromotion(hop)) {
+                        score += 1 << 17;
+                    }
+                }
+            } else if (Move.isPromotion(move)) {
+                score = 1 << 24;
+            } else if (move == killers[ply][0]) {
+                score = 1 << 22;
+            } else if (move == killers[ply][1]) {
+                score = 1 << 21;
+            } else {
+                score = Math.min(history[Move.from(move) * BitBoard.SIZE + Move.to(move)], (1 << 21) - 1);
+            }
+            moveScores[k] = score;
+        }
+    }
+
+    /**
+     * Swaps the best scored turn not yet searched into position k.
+     */
+    private static int nextMove(int[] list, int[] moveScores, int k, int count) {
+        int best = k;
+        for (int j = k + 1; j < count; j++) {
+            if (moveScores[j] > moveScores[best]) {
+                best = j;
+            }
+        }
+        int move = list[best];
+        int score = moveScores[best];
+        list[best] = list[k];
+        moveScores[best] = moveScores[k];
+        list[k] = move;
+        moveScores[k] = score;
+        return move;
+    }
+
+    private void storeKiller(int move, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+    }
+
+    private boolean checkLimits() {
+        nodes++;
+        if ((nodes & 1023) == 0 && (nodes >= nodeLimit || System.nanoTime() > deadline || aborted)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+}
@@ -0,0 +1,58 @@
+package org.cis1200.checkers;
+
+/**
+ * Command line report of how the parallel search scales with threads.
+ *
+ * For 1, 2, 4, ... up to the given number of threads, every test position is
+ * searched to a fixed depth with a fresh transposition table, and the time
+ * to reach that depth is compared with the single-threaded time.
+ *
+ * Usage: SearchScaling [threads] [depth]. The defaults are the number of
+ * available processors and depth 12.
+ */
+public class SearchScaling {
+    private static final String[] POSITIONS = {
+        "W:W31-50:B1-20",
+        "W:W26,29,33-35,38-41,43,45-47,49,50:B2-4,6,9,10,12,14,20,21,25",
+        "W:WK1,K50,33:BK10,K45,18",
+    };
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors, depth " + depth);
+        System.out.printf("%8s %10s %14s %14s %8s%n", "threads", "time (s)", "nodes", "nodes/sec", "speedup");
+
+        // warm the JIT up so the single-threaded run is not penalised
+        for (String fen : POSITIONS) {
+            Checkers game = new Checkers();
+            game.setPosition(fen);
+            new Search(depth, Long.MAX_VALUE, 3_600_000L).findBestMove(game);
+        }
+
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads
+                ? Math.min(threads * 2, maxThreads) : threads + 1) {
+            long elapsed = 0;
+            long nodes = 0;
+            for (String fen : POSITIONS) {
+                Checkers game = new Checkers();
+                game.setPosition(fen);
+                ParallelSearch engine = new ParallelSearch(threads, depth, Long.MAX_VALUE,
+                        3_600_000L, new TranspositionTable(Search.DEFAULT_TABLE_MB * threads));
+                long start = System.nanoTime();
+                engine.findBestMove(game);
+                elapsed += System.nanoTime() - start;
+                nodes += engine.getNodes();
+                engine.shutdown();
+            }
+            double seconds = elapsed / 1e9;
+            if (threads == 1) {
+                baseline = seconds;
+            }
+            System.out.printf("%8d %10.3f %14d %14.0f %8.2f%n",
+                    threads, seconds, nodes, nodes / seconds, baseline / seconds);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTest {
+    private Checkers game;
+
+    @BeforeEach
+    void setUp() {
+        game = new Checkers();
+    }
+
+    @Test
+    void testAvoidsHangingPiece() {
+        // (6,3)-(5,4) and (6,7)-(5,6) both let black capture for free
+        game.setPosition("W:W32,34:B20,23");
+        int move = new Search(6, Long.MAX_VALUE, 10_000).findBestMove(game);
+        assertNotEquals(BitBoard.square(5, 4), Move.to(move));
+        assertNotEquals(BitBoard.square(5, 6), Move.to(move));
+    }
+
+    @Test
+    void testFindsWin() {
+        // black's last piece can be captured right away
+        game.setPosition("W:W33:B28");
+        Search search = new Search();
+        int move = search.findBestMove(game);
+        assertTrue(Move.isCapture(move));
+        // the king can trap the soldier on 15 in two moves
+        game.setPosition("W:WK46:B15");
+        search = new Search(12, Long.MAX_VALUE, 10_000);
+        assertEquals(BitBoard.square(2, 7), Move.to(search.findBestMove(game)));
+        assertTrue(search.getScore() > Search.WIN - Search.MAX_PLY);
+    }
+
+    @Test
+    void testSearchRestoresGame() {
+        game.movePiece(6, 1, 5, 2);
+        game.movePiece(3, 4, 4, 3);
+        String fen = game.getFen();
+        Search search = new Search(6, Long.MAX_VALUE, 10_000);
+        int move = search.findBestMove(game);
+        assertEquals(fen, game.getFen());
+        assertEquals(2, game.getMoveHistory().length);
+        assertTrue(game.movePiece(BitBoard.row(Move.from(move)), BitBoard.col(Move.from(move)),
+                BitBoard.row(Move.to(move)), BitBoard.col(Move.to(move))));
+    }
+
+    @Test
+    void testNodeLimit() {
+        Search search = new Search(Search.MAX_PLY, 5_000, 10_000);
+        assertNotEquals(Move.NONE, search.findBestMove(game));
+        assertTrue(search.getNodes() < 5_000 + 1024);
+    }
+
+    @Test
+    void testAbort() throws InterruptedException {
+        Engine[] engines = {new Search(Search.MAX_PLY, Long.MAX_VALUE, 60_000),
+            new ParallelSearch(2, Search.MAX_PLY, Long.MAX_VALUE, 60_000, new TranspositionTable(4)),
+            new MonteCarloSearch(2, 60_000, Long.MAX_VALUE, 1 << 16)};
+        for (Engine engine : engines) {
+            Thread stopper = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                engine.abort();
+            });
+            long start = System.nanoTime();
+            stopper.start();
+            assertNotEquals(Move.NONE, engine.findBestMove(game));
+            assertTrue(System.nanoTime() - start < 30_000_000_000L);
+            stopper.join();
+            engine.shutdown();
+        }
+        // an abort also stops later searches, until it is cleared
+        Search search = new Search(4, Long.MAX_VALUE, 10_000);
+        search.abort();
+        assertNotEquals(Move.NONE, search.findBestMove(game));
+        assertEquals(0, search.getDepth());
+        search.clearAbort();
+        search.findBestMove(game);
+        assertEquals(4, search.getDepth());
+    }
+
+    @Test
+    void testEngineAI() {
+        assertTrue(game.movePiece(6, 1, 5, 2));
+        assertTrue(game.engineAI(new Search(4, Long.MAX_VALUE, 10_000)));
+        assertTrue(game.player1);
+    }
+
+    @Test
+    void testTranspositionTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Move.capture(BitBoard.square(6, 1), BitBoard.square(4, 3), BitBoard.square(5, 2), false);
+        table.store(12345L, move, -Search.WIN + 3, 7, TranspositionTable.LOWER);
+        long entry = table.probe(12345L);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-Search.WIN + 3, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(0L, table.probe(54321L));
+        table.clear();
+        assertEquals(0L, table.probe(12345L));
+    }
+
+    @Test
+    void testSharedTable() {
+        // a second search of the same position starts from the stored results
+        TranspositionTable table = new TranspositionTable(4);
+        Search first = new Search(8, Long.MAX_VALUE, 10_000, table);
+        int move = first.findBestMove(game);
+        Search second = new Search(8, Long.MAX_VALUE, 10_000, table);
+        assertEquals(move, second.findBestMove(game));
+        assertTrue(second.getNodes() < first.getNodes());
+    }
+
+    @Test
+    void testParallelSearch() {
+        game.movePiece(6, 1, 5, 2);
+        String fen = game.getFen();
+        ParallelSearch search = new ParallelSearch(3, 6, Long.MAX_VALUE, 10_000, new TranspositionTable(4));
+        int move = search.findBestMove(game);
+        search.shutdown();
+        assertEquals(fen, game.getFen());
+        assertEquals(1, game.getMoveHistory().length);
+        assertEquals(6, search.getDepth());
+        assertTrue(game.movePiece(BitBoard.row(Move.from(move)), BitBoard.col(Move.from(move)),
+                BitBoard.row(Move.to(move)), BitBoard.col(Move.to(move))));
+        assertTrue(game.engineAI(new ParallelSearch(2)));
+        assertFalse(game.player1);
+    }
+
+    @Test
+    void testMonteCarloSearch() {
+        game.movePiece(6, 1, 5, 2);
+        String fen = game.getFen();
+        MonteCarloSearch search = new MonteCarloSearch(2, 10_000, 2_000, 1 << 16);
+        int move = search.findBestMove(game);
+        assertEquals(fen, game.getFen());
+        assertEquals(2_000, search.getPlayouts());
+        assertTrue(search.getNodes() > 1);
+        assertTrue(game.movePiece(BitBoard.row(Move.from(move)), BitBoard.col(Move.from(move)),
+                BitBoard.row(Move.to(move)), BitBoard.col(Move.to(move))));
+
+        // the king traps the soldier on 15 in two moves, so every playout is won
+        game.setPosition("W:WK46:B15");
+        move = search.findBestMove(game);
+        search.shutdown();
+        assertEquals(BitBoard.square(2, 7), Move.to(move));
+        assertEquals(1000, search.getScore());
+    }
+
+    @Test
+    void testTournament() {
+        Tournament tournament = new Tournament("search:2000", "random", 200);
+        tournament.play(4, 2);
+        assertEquals(4, tournament.getWins() + tournament.getDraws() + tournament.getLosses());
+        assertEquals(0, tournament.getLosses());
+        assertEquals(0, Tournament.elo(5, 10, 5), 1e-9);
+        assertTrue(Tournament.elo(7, 2, 1) > 0);
+        assertTrue(Tournament.eloError(70, 20, 10) < Tournament.eloError(7, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> Tournament.createEngine("minimax"));
+    }
+
+    @Test
+    void testIncrementalEvaluation() {
+        // the running score always matches one computed from scratch
+        Evaluator incremental = new HandcraftedEvaluator();
+        Evaluator fresh = new HandcraftedEvaluator();
+        SplittableRandom random = new SplittableRandom(5);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        incremental.reset(game.getPosition());
+        for (int ply = 0; ply < 200; ply++) {
+            int count = game.generateMoves(moves);
+            if (count == 0) {
+                break;
+            }
+            int move = moves[random.nextInt(count)];
+            incremental.makeMove(game.getPosition(), move);
+            game.makeMove(move);
+            fresh.reset(game.getPosition());
+            assertEquals(fresh.evaluate(game.player1), incremental.evaluate(game.player1));
+        }
+        while (game.getMoveHistory().length > 0) {
+            int move = game.getMoveHistory()[game.getMoveHistory().length - 1];
+            game.unmakeMove();
+            incremental.unmakeMove(game.getPosition(), move);
+        }
+        fresh.reset(game.getPosition());
+        assertEquals(fresh.evaluate(true), incremental.evaluate(true));
+    }
+
+    @Test
+    void testEvaluationIsSymmetric() {
+        Evaluator evaluator = new HandcraftedEvaluator();
+        evaluator.reset(game.getPosition());
+        assertEquals(evaluator.evaluate(true), evaluator.evaluate(false));
+
+        // the same position with the colors swapped and the board turned
+        game.setPosition("W:W31,K40:B13,K26");
+        evaluator.reset(game.getPosition());
+        int white = evaluator.evaluate(true);
+        game.setPosition("B:W38,K25:B20,K11");
+        evaluator.reset(game.getPosition());
+        assertEquals(white, evaluator.evaluate(false));
+        assertTrue(white > 0);
+    }
+}
@@ -0,0 +1,318 @@
+package org.cis1200.checkers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Win/draw/loss endgame tables built by TablebaseGenerator.
+ *
+ * There is one file per material signature (the numbers of white men,
+ * white kings, black men and black kings), named like "21-01.tb". It holds
+ * the value of every position of that material at the start of a turn,
+ * from the point of view of the side to move, packed 2 bits per position
+ * and 32 positions per long.
+ *
+ * A position is indexed by the side to move and, for each of the four
+ * groups of pieces, the rank of its set of squares in the combinatorial
+ * number system, so identical pieces are not counted twice. Indexes of
+ * impossible positions (two pieces on a square, a man on the row where it
+ * would have been crowned) hold INVALID.
+ *
+ * Probing reads the files a page at a time and keeps the most recently
+ * used pages in memory.
+ */
+final class Tablebase implements Closeable {
+    static final int DRAW = 0;
+    static final int WIN = 1;
+    static final int LOSS = 2;
+    static final int INVALID = 3;
+    // returned by probe for a position not in the tables
+    static final int UNKNOWN = -1;
+
+    static final int MAGIC = 0x434B5442;
+    // 2: tables solved under the maximum capture rule
+    // 3: soldiers only crowned at the end of a capture
+    static final int VERSION = 3;
+    static final int HEADER_BYTES = 32;
+    static final int PAGE_LONGS = 512;
+
+    private static final int SQUARES = 50;
+    private static final int MAX_GROUP = 15;
+    private static final long[][] CHOOSE = new long[SQUARES + 1][MAX_GROUP + 1];
+
+    static {
+        for (int n = 0; n <= SQUARES; n++) {
+            CHOOSE[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, MAX_GROUP); k++) {
+                CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + (k < n ? CHOOSE[n - 1][k] : 0);
+            }
+        }
+    }
+
+    private final Path directory;
+    private final int maxPieces;
+    private final Map<Integer, FileChannel> channels = new HashMap<>();
+    private final Map<Long, long[]> pages;
+    private long hits;
+    private long misses;
+
+    /**
+     * Opens the tables in a directory.
+     *
+     * @param directory The directory of the table files
+     * @param cachePages The number of 4 KB pages kept in memory
+     * @throws IOException if the directory cannot be listed
+     */
+    Tablebase(Path directory, int cachePages) throws IOException {
+        this.directory = directory;
+        int most = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                int signature = parseFileName(file.getFileName().toString());
+                if (signature >= 0) {
+                    most = Math.max(most, pieces(signature));
+                }
+            }
+        }
+        maxPieces = most;
+        pages = new LinkedHashMap<>(cachePages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                return size() > cachePages;
+            }
+        };
+    }
+
+    /**
+     * @return The largest number of pieces of any table
+     */
+    int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * Looks up the value of a position.
+     *
+     * @param game The game
+     * @return WIN, DRAW or LOSS for the side to move, or UNKNOWN if the
+     *         position is not in the tables or a capture is under way
+     */
+    int probe(Checkers game) {
+        BitBoard position = game.getPosition();
+        if (game.getJumper() != BitBoard.NONE || position.player1Pieces == 0 || position.player2Pieces == 0
+                || Long.bitCount(position.occupied()) > maxPieces) {
+            return UNKNOWN;
+        }
+        int signature = signature(position);
+        long index = index(position, game.player1);
+        long[] page;
+        try {
+            page = page(signature, index / (PAGE_LONGS * 32L));
+        } catch (IOException e) {
+            return UNKNOWN;
+        }
+        if (page == null) {
+            return UNKNOWN;
+        }
+        int value = get(page[(int) (index / 32 % PAGE_LONGS)], index);
+        return value == INVALID ? UNKNOWN : value;
+    }
+
+    /**
+     * Returns a page of a table, reading it if it is not cached.
+     *
+     * @return The page, or null if there is no table for the signature
+     */
+    private synchronized long[] page(int signature, long number) throws IOException {
+        Long key = ((long) signature << 40) | number;
+        long[] page = pages.get(key);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+        FileChannel channel = channel(signature);
+        if (channel == null) {
+            return null;
+        }
+        misses++;
+        ByteBuffer in = ByteBuffer.allocate(PAGE_LONGS * 8);
+        long offset = HEADER_BYTES + number * PAGE_LONGS * 8;
+        while (in.hasRemaining() && channel.read(in, offset + in.position()) > 0) {
+            // read up to the end of the page or of the file
+        }
+        in.flip();
+        page = new long[PAGE_LONGS];
+        in.asLongBuffer().get(page, 0, in.remaining() / 8);
+        pages.put(key, page);
+        return page;
+    }
+
+    private FileChannel channel(int signature) throws IOException {
+        if (channels.containsKey(signature)) {
+            return channels.get(signature);
+        }
+        Path file = directory.resolve(fileName(signature));
+        FileChannel channel = null;
+        if (Files.exists(file)) {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != signature
+                    || header.getLong(16) != size(signature)) {
+                channel.close();
+                throw new IOException("Invalid table " + file);
+            }
+        }
+        channels.put(signature, channel);
+        return channel;
+    }
+
+    /**
+     * @return The numbers of pages read from disk and found in the cache
+     */
+    synchronized long[] getPageCounts() {
+        return new long[] {misses, hits};
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel channel : channels.values()) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        channels.clear();
+        pages.clear();
+    }
+
+    /**
+     * Returns the material signature of a position.
+     *
+     * @param position The position
+     * @return White men, white kings, black men and black kings, 4 bits each
+     */
+    static int signature(BitBoard position) {
+        return signature(Long.bitCount(position.player1Pieces & ~position.kings),
+                Long.bitCount(position.player1Pieces & position.kings),
+                Long.bitCount(position.player2Pieces & ~position.kings),
+                Long.bitCount(position.player2Pieces & position.kings));
+    }
+
+    static int signature(int whiteMen, int whiteKings, int blackMen, int blackKings) {
+        return whiteMen | (whiteKings << 4) | (blackMen << 8) | (blackKings << 12);
+    }
+
+    /**
+     * Returns the number of pieces in one group of a signature.
+     *
+     * @param group 0 for white men, 1 white kings, 2 black men, 3 black kings
+     */
+    static int count(int signature, int group) {
+        return (signature >>> (group * 4)) & 0xF;
+    }
+
+    static int pieces(int signature) {
+        return count(signature, 0) + count(signature, 1) + count(signature, 2) + count(signature, 3);
+    }
+
+    /**
+     * @return The number of indexes of a table, both sides to move included
+     */
+    static long size(int signature) {
+        long size = 2;
+        for (int group = 0; group < 4; group++) {
+            size *= CHOOSE[SQUARES][count(signature, group)];
+        }
+        return size;
+    }
+
+    /**
+     * Returns the index of a position in the table of its signature.
+     *
+     * @param position The position
+     * @param player1 Whether player 1 is to move
+     * @return The index
+     */
+    static long index(BitBoard position, boolean player1) {
+        long[] groups = {
+            position.player1Pieces & ~position.kings, position.player1Pieces & position.kings,
+            position.player2Pieces & ~position.kings, position.player2Pieces & position.kings,
+        };
+        long index = player1 ? 0 : 1;
+        for (long group : groups) {
+            long rank = 0;
+            int k = 0;
+            for (long bits = group; bits != 0; bits &= bits - 1) {
+                k++;
+                rank += CHOOSE[BitBoard.number(Long.numberOfTrailingZeros(bits)) - 1][k];
+            }
+            index = index * CHOOSE[SQUARES][k] + rank;
+        }
+        return index;
+    }
+
+    /**
+     * Sets up the position of an index.
+     *
+     * @param signature The signature of the table
+     * @param index The index
+     * @param position Receives the pieces; must be empty
+     * @return Whether player 1 is to move, or null if the index is not a
+     *         possible position
+     */
+    static Boolean decode(int signature, long index, BitBoard position) {
+        for (int group = 3; group >= 0; group--) {
+            int k = count(signature, group);
+            long base = CHOOSE[SQUARES][k];
+            long rank = index % base;
+            index /= base;
+            int color = group < 2 ? 1 : 2;
+            boolean king = (group & 1) != 0;
+            int top = SQUARES - 1;
+            for (; k > 0; k--) {
+                while (CHOOSE[top][k] > rank) {
+                    top--;
+                }
+                rank -= CHOOSE[top][k];
+                int square = BitBoard.fromNumber(top + 1);
+                // a man on its crowning row would have been made a king
+                if (position.colorAt(square) != 0 || (!king && BitBoard.row(square) == (color == 1 ? 0 : 9))) {
+                    return null;
+                }
+                position.put(square, color, king);
+            }
+        }
+        return index == 0;
+    }
+
+    static int get(long word, long index) {
+        return (int) (word >>> ((index & 31) * 2)) & 3;
+    }
+
+    /**
+     * @return The file name of a table, white men and kings then black
+     */
+    static String fileName(int signature) {
+        return "" + count(signature, 0) + count(signature, 1) + "-" + count(signature, 2) + count(signature, 3)
+                + ".tb";
+    }
+
+    /**
+     * @return The signature of a table file name, or -1 if it is not one
+     */
+    static int parseFileName(String name) {
+        if (!name.matches("\\d\\d-\\d\\d\\.tb")) {
+            return -1;
+        }
+        return signature(name.charAt(0) - '0', name.charAt(1) - '0', name.charAt(3) - '0', name.charAt(4) - '0');
+    }
+}
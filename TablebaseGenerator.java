@@ -0,0 +1,327 @@
+package org.cis1200.checkers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds the endgame tables read by Tablebase.
+ *
+ * Signatures are solved from the fewest pieces up, and among signatures
+ * with as many pieces from the fewest men up, so a capture or a crowning
+ * always leads into a table that is already solved. Only positions at the
+ * start of a turn are stored: a multi-jump is followed hop by hop with
+ * make/unmake until the turn passes, and the whole sequence counts as one
+ * move.
+ *
+ * A table is solved by value iteration. Each pass looks at every position
+ * not yet decided: it is a win if some move leads to a loss for the
+ * opponent, and a loss if every move leads to a win for the opponent (or
+ * there is no move). Passes repeat until one decides nothing more, and the
+ * positions left are draws. The positions of a pass are split into chunks
+ * handed out to a pool of threads; values are only ever set once, with a
+ * compare-and-set on the packed word, so threads can read positions other
+ * threads are deciding.
+ *
+ * Usage: TablebaseGenerator directory [maxPieces] [threads]. Tables already
+ * in the directory are loaded instead of being built again.
+ */
+public class TablebaseGenerator {
+    private static final int CHUNK = 1 << 12;
+    private static final int MAX_HOPS = 32;
+
+    private final Path directory;
+    private final int maxPieces;
+    private final int threads;
+    // solved tables, and the one being solved
+    private final Map<Integer, AtomicLongArray> tables = new HashMap<>();
+
+    /**
+     * Creates a generator.
+     *
+     * @param directory The directory the tables are written to
+     * @param maxPieces The largest number of pieces on the board
+     * @param threads The number of threads solving a table
+     */
+    TablebaseGenerator(Path directory, int maxPieces, int threads) {
+        this.directory = directory;
+        this.maxPieces = maxPieces;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: TablebaseGenerator directory [maxPieces] [threads]");
+            System.exit(1);
+        }
+        int maxPieces = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        new TablebaseGenerator(Path.of(args[0]), maxPieces, threads).generate(true);
+    }
+
+    /**
+     * Builds every table up to the piece limit.
+     *
+     * @param verbose Whether to print statistics for each table
+     * @throws IOException if a table cannot be read or written
+     * @throws InterruptedException if the thread is interrupted
+     */
+    void generate(boolean verbose) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int signature : signatures(maxPieces)) {
+                long start = System.nanoTime();
+                Path file = directory.resolve(Tablebase.fileName(signature));
+                AtomicLongArray table;
+                int passes = 0;
+                if (Files.exists(file)) {
+                    table = read(file, signature);
+                } else {
+                    table = new AtomicLongArray((int) ((Tablebase.size(signature) + 31) / 32));
+                    tables.put(signature, table);
+                    passes = solve(pool, signature, table);
+                    write(file, signature, table);
+                }
+                tables.put(signature, table);
+                if (verbose) {
+                    long[] counts = count(table, Tablebase.size(signature));
+                    System.out.printf("%s %d positions: %d wins %d losses %d draws, %d passes, %.2f s%n",
+                            Tablebase.fileName(signature), counts[0] + counts[1] + counts[2], counts[Tablebase.WIN],
+                            counts[Tablebase.LOSS], counts[Tablebase.DRAW], passes,
+                            (System.nanoTime() - start) / 1e9);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lists the signatures with both sides on the board and at most a number
+     * of pieces, in the order they are solved.
+     */
+    static List<Integer> signatures(int maxPieces) {
+        List<Integer> signatures = new ArrayList<>();
+        for (int whiteMen = 0; whiteMen <= maxPieces; whiteMen++) {
+            for (int whiteKings = 0; whiteMen + whiteKings <= maxPieces; whiteKings++) {
+                for (int blackMen = 0; whiteMen + whiteKings + blackMen <= maxPieces; blackMen++) {
+                    for (int blackKings = 0; whiteMen + whiteKings + blackMen + blackKings <= maxPieces;
+                            blackKings++) {
+                        if (whiteMen + whiteKings > 0 && blackMen + blackKings > 0) {
+                            signatures.add(Tablebase.signature(whiteMen, whiteKings, blackMen, blackKings));
+                        }
+                    }
+                }
+            }
+        }
+        signatures.sort(Comparator.comparingInt(Tablebase::pieces)
+                .thenComparingInt(s -> Tablebase.count(s, 0) + Tablebase.count(s, 2)));
+        return signatures;
+    }
+
+    /**
+     * Runs passes over a table until one decides no position.
+     *
+     * @return The number of passes
+     */
+    private int solve(ExecutorService pool, int signature, AtomicLongArray table)
+            throws InterruptedException, IOException {
+        long size = Tablebase.size(signature);
+        int passes = 0;
+        long changed;
+        do {
+            AtomicLong next = new AtomicLong();
+            LongAdder decided = new LongAdder();
+            boolean first = passes == 0;
+            List<Callable<Void>> workers = new ArrayList<>();
+            for (int k = 0; k < threads; k++) {
+                workers.add(() -> {
+                    Worker worker = new Worker();
+                    for (long chunk = next.getAndIncrement(); chunk * CHUNK < size; chunk = next.getAndIncrement()) {
+                        long end = Math.min(size, (chunk + 1) * CHUNK);
+                        for (long index = chunk * CHUNK; index < end; index++) {
+                            if (worker.decide(signature, table, index, first)) {
+                                decided.increment();
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : pool.invokeAll(workers)) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Solving " + Tablebase.fileName(signature) + " failed", e.getCause());
+                }
+            }
+            changed = decided.sum();
+            passes++;
+        } while (changed > 0);
+        return passes;
+    }
+
+    /**
+     * Solves positions with its own game and move buffers.
+     */
+    private class Worker {
+        private final Checkers game = new Checkers();
+        private final int[][] moves = new int[MAX_HOPS][MoveGenerator.MAX_MOVES];
+
+        /**
+         * Tries to decide one position.
+         *
+         * @param first Whether this is the first pass, which also marks the
+         *              impossible positions
+         * @return Whether the position was decided (or marked invalid)
+         */
+        boolean decide(int signature, AtomicLongArray table, long index, boolean first) {
+            int word = (int) (index >>> 5);
+            if (Tablebase.get(table.get(word), index) != Tablebase.DRAW) {
+                return false;
+            }
+            BitBoard position = new BitBoard();
+            Boolean player1 = Tablebase.decode(signature, index, position);
+            if (player1 == null) {
+                if (first) {
+                    set(table, index, Tablebase.INVALID);
+                }
+                return false;
+            }
+            game.setPosition(position, player1);
+            int value = evaluate(0);
+            if (value == Tablebase.DRAW) {
+                return false;
+            }
+            set(table, index, value);
+            return true;
+        }
+
+        /**
+         * Returns WIN if a move (a whole capture sequence) wins for the side
+         * to move, LOSS if all of them lose and DRAW if that is not known
+         * yet.
+         */
+        private int evaluate(int depth) {
+            int[] list = moves[depth];
+            int count = game.generateMoves(list);
+            boolean allLose = true;
+            for (int k = 0; k < count; k++) {
+                boolean player1 = game.player1;
+                game.makeMove(list[k]);
+                int value;
+                if (game.player1 == player1) {
+                    value = evaluate(depth + 1);
+                } else {
+                    value = opponent(lookup());
+                }
+                game.unmakeMove();
+                if (value == Tablebase.WIN) {
+                    return Tablebase.WIN;
+                }
+                allLose &= value == Tablebase.LOSS;
+            }
+            return allLose ? Tablebase.LOSS : Tablebase.DRAW;
+        }
+
+        /**
+         * Returns the value of the position after a move for the side now to
+         * move, who has lost if no pieces are left.
+         */
+        private int lookup() {
+            BitBoard position = game.getPosition();
+            if ((game.player1 ? position.player1Pieces : position.player2Pieces) == 0) {
+                return Tablebase.LOSS;
+            }
+            AtomicLongArray table = tables.get(Tablebase.signature(position));
+            long index = Tablebase.index(position, game.player1);
+            return Tablebase.get(table.get((int) (index >>> 5)), index);
+        }
+    }
+
+    private static int opponent(int value) {
+        return value == Tablebase.WIN ? Tablebase.LOSS : value == Tablebase.LOSS ? Tablebase.WIN : Tablebase.DRAW;
+    }
+
+    private static void set(AtomicLongArray table, long index, int value) {
+        int word = (int) (index >>> 5);
+        long bits = (long) value << ((index & 31) * 2);
+        long old;
+        do {
+            old = table.get(word);
+        } while (!table.compareAndSet(word, old, old | bits));
+    }
+
+    /**
+     * Counts the positions of each value, invalid indexes left out.
+     */
+    private static long[] count(AtomicLongArray table, long size) {
+        long[] counts = new long[4];
+        for (long index = 0; index < size; index++) {
+            counts[Tablebase.get(table.get((int) (index >>> 5)), index)]++;
+        }
+        return counts;
+    }
+
+    private static void write(Path file, int signature, AtomicLongArray table) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocate(1 << 16);
+            out.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(signature).putInt(0)
+                    .putLong(Tablebase.size(signature)).putLong(0);
+            for (int k = 0; k < table.length(); k++) {
+                if (!out.hasRemaining()) {
+                    drain(channel, out);
+                }
+                out.putLong(table.get(k));
+            }
+            drain(channel, out);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private static AtomicLongArray read(Path file, int signature) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long size = Tablebase.size(signature);
+            int words = (int) ((size + 31) / 32);
+            if (in.remaining() != Tablebase.HEADER_BYTES + words * 8L || in.getInt(0) != Tablebase.MAGIC
+                    || in.getInt(4) != Tablebase.VERSION || in.getInt(8) != signature || in.getLong(16) != size) {
+                throw new IOException("Invalid table " + file);
+            }
+            AtomicLongArray table = new AtomicLongArray(words);
+            for (int k = 0; k < words; k++) {
+                table.set(k, in.getLong(Tablebase.HEADER_BYTES + k * 8));
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.cis1200.checkers;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TablebaseTest {
+    @TempDir
+    static Path directory;
+    private Checkers game;
+
+    @BeforeAll
+    static void generate() throws IOException, InterruptedException {
+        new TablebaseGenerator(directory, 2, 2).generate(false);
+    }
+
+    @BeforeEach
+    void setUp() {
+        game = new Checkers();
+    }
+
+    @Test
+    void testIndexRoundTrip() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int k = 0; k < 1000; k++) {
+            // play out a random game to a few pieces
+            game.reset();
+            while (Long.bitCount(game.getPosition().occupied()) > 4 || game.getJumper() != BitBoard.NONE) {
+                int move = game.randomMove(random);
+                if (move == Move.NONE) {
+                    break;
+                }
+                game.makeMove(move);
+            }
+            BitBoard position = game.getPosition();
+            if (Long.bitCount(position.occupied()) > 4) {
+                continue;
+            }
+            int signature = Tablebase.signature(position);
+            long index = Tablebase.index(position, game.player1);
+            assertTrue(index < Tablebase.size(signature));
+            BitBoard decoded = new BitBoard();
+            assertEquals(game.player1, Tablebase.decode(signature, index, decoded));
+            assertEquals(position.player1Pieces, decoded.player1Pieces);
+            assertEquals(position.player2Pieces, decoded.player2Pieces);
+            assertEquals(position.kings, decoded.kings);
+        }
+    }
+
+    @Test
+    void testProbe() throws IOException {
+        try (Tablebase tablebase = new Tablebase(directory, 16)) {
+            assertEquals(2, tablebase.getMaxPieces());
+            game.setPosition("W:W28:B23");
+            assertEquals(Tablebase.WIN, tablebase.probe(game));
+            // the man is stuck in the corner
+            game.setPosition("W:W6:B1");
+            assertEquals(Tablebase.LOSS, tablebase.probe(game));
+            // a king in the corner can only move along the long diagonal
+            game.setPosition("W:WK46:BK5");
+            assertEquals(Tablebase.LOSS, tablebase.probe(game));
+            game.setPosition("W:WK47:BK4");
+            assertEquals(Tablebase.DRAW, tablebase.probe(game));
+
+            game.setPosition("W:WK28,K50:BK5");
+            assertEquals(Tablebase.UNKNOWN, tablebase.probe(game));
+            game.reset();
+            assertEquals(Tablebase.UNKNOWN, tablebase.probe(game));
+
+            long[] counts = tablebase.getPageCounts();
+            assertTrue(counts[0] >= 1);
+            assertTrue(counts[1] >= 1);
+        }
+    }
+
+    @Test
+    void testSearchUsesTablebase() throws IOException {
+        try (Tablebase tablebase = new Tablebase(directory, 16)) {
+            game.setPosition("W:WK46:B15");
+            assertEquals(Tablebase.WIN, tablebase.probe(game));
+            Search search = new Search(6, Long.MAX_VALUE, 10_000, new TranspositionTable(1));
+            search.setTablebase(tablebase);
+            game.makeMove(search.findBestMove(game));
+            assertEquals(Tablebase.LOSS, tablebase.probe(game));
+            assertTrue(search.getScore() > Search.TABLEBASE_WIN - Search.MAX_PLY);
+        }
+    }
+}
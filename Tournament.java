@@ -0,0 +1,319 @@
+package org.cis1200.checkers;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless engine-versus-engine match runner.
+ *
+ * Games are played in pairs: both games of a pair start from the same few
+ * random opening moves, with the engines swapping colors, so neither engine
+ * profits from a lucky opening. Games are spread over a fixed number of
+ * threads, each with its own engines. A game ends as soon as Checkers.getResult
+ * says so, and one that runs longer than the ply cap is a draw.
+ *
+ * Usage: Tournament engineA engineB [games] [threads] [maxPlies] [output].
+ * An engine is "search:nodes[:weights]" (alpha-beta limited to a number of
+ * nodes per move, with tuned evaluation weights read from a file),
+ * "nnue:network:nodes" (the same with an NnueNetwork read from a weights
+ * file), "mcts:playouts" or "random", optionally preceded by "book:file:"
+ * to play from an opening book first. The summary is printed and, when an
+ * output file is given, appended to it.
+ */
+public class Tournament {
+    // random plies played before the engines take over
+    private static final int OPENING_PLIES = 4;
+    private static final long SEED = 0x70_0A_2024L;
+
+    private final String engineA;
+    private final String engineB;
+    private final int maxPlies;
+
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder draws = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder plies = new LongAdder();
+
+    /**
+     * Creates a match between two engines.
+     *
+     * @param engineA The engine whose results are reported
+     * @param engineB Its opponent
+     * @param maxPlies The number of plies after which a game is a draw
+     */
+    Tournament(String engineA, String engineB, int maxPlies) {
+        // fail early on a bad description
+        createEngine(engineA).shutdown();
+        createEngine(engineB).shutdown();
+        this.engineA = engineA;
+        this.engineB = engineB;
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: Tournament engineA engineB [games] [threads] [maxPlies] [output]");
+            System.exit(1);
+        }
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int maxPlies = args.length > 4 ? Integer.parseInt(args[4]) : 300;
+        Tournament tournament = new Tournament(args[0], args[1], maxPlies);
+
+        long start = System.nanoTime();
+        tournament.play(games, threads);
+        String summary = tournament.summary(System.nanoTime() - start);
+        System.out.println(summary);
+        if (args.length > 5) {
+            try (PrintWriter out = new PrintWriter(new FileWriter(args[5], true))) {
+                out.println(summary);
+            }
+        }
+    }
+
+    /**
+     * Plays a number of games on a number of threads and adds up the results.
+     *
+     * @param games The number of games, rounded up to an even number
+     * @param threads The number of games played at once
+     */
+    void play(int games, int threads) {
+        int pairs = (games + 1) / 2;
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int k = 0; k < threads; k++) {
+            pool.execute(() -> {
+                Engine a = createEngine(engineA);
+                Engine b = createEngine(engineB);
+                try {
+                    for (int pair = next.getAndIncrement(); pair < pairs; pair = next.getAndIncrement()) {
+                        record(playGame(a, b, pair), true);
+                        record(playGame(b, a, pair), false);
+                    }
+                } finally {
+                    a.shutdown();
+                    b.shutdown();
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Plays one game from the opening of the given pair.
+     *
+     * @return 1 if player 1 won, -1 if player 2 won, 0 for a draw
+     */
+    private int playGame(Engine player1, Engine player2, int pair) {
+        Checkers game = new Checkers();
+        SplittableRandom random = new SplittableRandom(SEED + pair);
+        for (int ply = 0; ply < maxPlies; ply++) {
+            GameResult result = game.getResult();
+            if (result.isOver()) {
+                plies.add(ply);
+                return result == GameResult.PLAYER1_WINS ? 1 : result == GameResult.PLAYER2_WINS ? -1 : 0;
+            }
+            int move;
+            if (ply < OPENING_PLIES) {
+                move = game.randomMove(random);
+            } else {
+                Engine engine = game.player1 ? player1 : player2;
+                long start = Metrics.start();
+                move = engine.findBestMove(game);
+                Metrics.stop(Metrics.Timer.AI_MOVE, start);
+                nodes.add(engine.getNodes());
+            }
+            if (move == Move.NONE) {
+                plies.add(ply);
+                return game.player1 ? -1 : 1;
+            }
+            game.makeMove(move);
+            Metrics.countMove();
+        }
+        plies.add(maxPlies);
+        return 0;
+    }
+
+    private void record(int result, boolean aIsPlayer1) {
+        Metrics.countGame();
+        if (result == 0) {
+            draws.increment();
+        } else if ((result == 1) == aIsPlayer1) {
+            wins.increment();
+        } else {
+            losses.increment();
+        }
+    }
+
+    /**
+     * Formats the results so far.
+     *
+     * @param elapsedNanos The time the games took
+     * @return One line per statistic
+     */
+    String summary(long elapsedNanos) {
+        long w = wins.sum();
+        long d = draws.sum();
+        long l = losses.sum();
+        long games = w + d + l;
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(engineA).append(" vs ").append(engineB).append('\n');
+        sb.append(String.format("games %d  W %d  D %d  L %d  score %.1f%%%n",
+                games, w, d, l, games == 0 ? 0 : 100.0 * (w + d / 2.0) / games));
+        sb.append(String.format("elo %+.1f +/- %.1f%n", elo(w, d, l), eloError(w, d, l)));
+        sb.append(String.format("%.2f games/sec  %.0f nodes/sec  %.1f plies/game",
+                games / seconds, nodes.sum() / seconds, games == 0 ? 0 : (double) plies.sum() / games));
+        return sb.toString();
+    }
+
+    long getWins() {
+        return wins.sum();
+    }
+
+    long getDraws() {
+        return draws.sum();
+    }
+
+    long getLosses() {
+        return losses.sum();
+    }
+
+    /**
+     * Returns the Elo difference matching a match score.
+     *
+     * @return The difference, positive when engine A scored more than half
+     */
+    static double elo(long w, long d, long l) {
+        long games = w + d + l;
+        return games == 0 ? 0 : eloOfScore((w + d / 2.0) / games);
+    }
+
+    /**
+     * Returns half the width of the 95% confidence interval of the Elo
+     * difference, from the spread of the game results.
+     */
+    static double eloError(long w, long d, long l) {
+        long games = w + d + l;
+        if (games == 0) {
+            return 0;
+        }
+        double score = (w + d / 2.0) / games;
+        double variance = (w * Math.pow(1 - score, 2) + d * Math.pow(0.5 - score, 2)
+                + l * Math.pow(score, 2)) / games;
+        double margin = 1.96 * Math.sqrt(variance / games);
+        return (eloOfScore(score + margin) - eloOfScore(score - margin)) / 2;
+    }
+
+    private static double eloOfScore(double score) {
+        double clamped = Math.min(Math.max(score, 1e-3), 1 - 1e-3);
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+
+    /**
+     * Creates an engine from its description.
+     *
+     * @throws IllegalArgumentException if the description is not understood
+     */
+    static Engine createEngine(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "book":
+                    if (parts.length < 3) {
+                        throw new IllegalArgumentException("book needs a file and an engine: " + spec);
+                    }
+                    Engine engine = createEngine(spec.substring(spec.indexOf(':', 5) + 1));
+                    try {
+                        return new BookEngine(new OpeningBook(Path.of(parts[1]), 1), engine);
+                    } catch (IOException e) {
+                        engine.shutdown();
+                        throw new IllegalArgumentException("cannot read book: " + spec, e);
+                    }
+                case "search":
+                    long nodeLimit = parts.length > 1 ? Long.parseLong(parts[1]) : 20_000;
+                    int[] weights = HandcraftedEvaluator.defaultWeights();
+                    if (parts.length > 2) {
+                        try {
+                            weights = HandcraftedEvaluator.readWeights(Path.of(parts[2]));
+                        } catch (IOException e) {
+                            throw new IllegalArgumentException("cannot read weights: " + spec, e);
+                        }
+                    }
+                    return new Search(Search.MAX_PLY, nodeLimit, 3_600_000L, new TranspositionTable(4),
+                            new HandcraftedEvaluator(weights));
+                case "nnue":
+                    if (parts.length < 2) {
+                        throw new IllegalArgumentException("nnue needs a weights file: " + spec);
+                    }
+                    NnueNetwork network;
+                    try {
+                        network = NnueNetwork.load(Path.of(parts[1]));
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("cannot read network: " + spec, e);
+                    }
+                    return new Search(Search.MAX_PLY, parts.length > 2 ? Long.parseLong(parts[2]) : 20_000,
+                            3_600_000L, new TranspositionTable(4), network.newEvaluator());
+                case "mcts":
+                    long playouts = parts.length > 1 ? Long.parseLong(parts[1]) : 1_000;
+                    return new MonteCarloSearch(1, 3_600_000L, playouts, 1 << 18);
+                case "random":
+                    return new RandomEngine();
+                default:
+                    throw new IllegalArgumentException("unknown engine: " + spec);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad engine limit: " + spec, e);
+        }
+    }
+
+    /**
+     * Plays uniformly random legal moves.
+     */
+    private static class RandomEngine implements Engine {
+        private final SplittableRandom random = new SplittableRandom();
+
+        @Override
+        public int findBestMove(Checkers game) {
+            return game.randomMove(random);
+        }
+
+        @Override
+        public long getNodes() {
+            return 0;
+        }
+
+        @Override
+        public int getDepth() {
+            return 0;
+        }
+
+        @Override
+        public int getScore() {
+            return 0;
+        }
+
+        @Override
+        public void abort() {
+        }
+
+        @Override
+        public void clearAbort() {
+        }
+    }
+}
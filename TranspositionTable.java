@@ -0,0 +1,128 @@
+package org.cis1200.checkers;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table shared by searches, including searches
+ * running on different threads.
+ *
+ * The table is preallocated as two long arrays with a power-of-two number of
+ * entries. Each entry stores the position hash XORed with its data word, so
+ * a reader that sees a key from one write and data from another (two threads
+ * storing into the same slot at once) gets a mismatching key and treats the
+ * entry as a miss. That makes the table safe without locks or volatile
+ * accesses; the worst a race can do is lose an entry.
+ *
+ * Entries live in buckets of two: the first slot keeps the deepest result
+ * (or is replaced once it is from an older search), the second slot is
+ * always replaced.
+ */
+class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    // data word: move in bits 0-19, score + 2^20 in bits 20-41,
+    // depth in bits 42-49, bound in bits 50-51, generation in bits 52-59
+    private static final int SCORE_SHIFT = 20;
+    private static final int SCORE_OFFSET = 1 << 20;
+    private static final int DEPTH_SHIFT = 42;
+    private static final int BOUND_SHIFT = 50;
+    private static final int GENERATION_SHIFT = 52;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int generation;
+
+    /**
+     * Creates a table using about the given amount of memory.
+     *
+     * @param megabytes The size of the table, rounded down to a power of two entries
+     */
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(2, (long) megabytes * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Starts a new search, so entries of earlier searches age out first.
+     */
+    void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table.
+     */
+    void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /**
+     * Looks a position up.
+     *
+     * @param hash The Zobrist hash of the position
+     * @return The entry's data word, or 0 if the position is not stored
+     */
+    long probe(long hash) {
+        int index = (int) hash & mask & ~1;
+        for (int slot = index; slot <= index + 1; slot++) {
+            long word = data[slot];
+            if ((keys[slot] ^ word) == hash && word != 0) {
+                return word;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores a search result.
+     *
+     * @param hash The Zobrist hash of the position
+     * @param move The best move found, or Move.NONE
+     * @param score The score, already adjusted for the distance to a win
+     * @param depth The depth that was searched
+     * @param bound EXACT, LOWER or UPPER
+     */
+    void store(long hash, int move, int score, int depth, int bound) {
+        int index = (int) hash & mask & ~1;
+        long word = (move & 0xFFFFFL)
+                | ((long) (score + SCORE_OFFSET) << SCORE_SHIFT)
+                | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+        int slot = index + 1;
+        long first = data[index];
+        if ((keys[index] ^ first) == hash || first == 0
+                || depth >= depth(first) || generation(first) != generation) {
+            slot = index;
+        }
+        data[slot] = word;
+        keys[slot] = hash ^ word;
+    }
+
+    static int move(long word) {
+        return (int) (word & 0xFFFFF);
+    }
+
+    static int score(long word) {
+        return (int) ((word >>> SCORE_SHIFT) & 0x3FFFFF) - SCORE_OFFSET;
+    }
+
+    static int depth(long word) {
+        return (int) ((word >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    static int bound(long word) {
+        return (int) ((word >>> BOUND_SHIFT) & 0x3);
+    }
+
+    private static int generation(long word) {
+        return (int) ((word >>> GENERATION_SHIFT) & 0xFF);
+    }
+}
@@ -0,0 +1,71 @@
+package org.cis1200.checkers;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for hashing positions.
+ *
+ * A position's hash is the XOR of one key per occupied square (for the color
+ * and rank of the piece on it), a key for player 2 to move, and a key for the
+ * square of a piece that is in the middle of a multi-jump. The keys come from
+ * a fixed seed so hashes stay the same from run to run and can be stored on
+ * disk.
+ */
+final class Zobrist {
+    private static final long[] PIECES = new long[BitBoard.SIZE * 4];
+    private static final long[] JUMPERS = new long[BitBoard.SIZE];
+    static final long PLAYER2_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0DE_2024L);
+        for (int k = 0; k < PIECES.length; k++) {
+            PIECES[k] = random.nextLong();
+        }
+        for (int k = 0; k < JUMPERS.length; k++) {
+            JUMPERS[k] = random.nextLong();
+        }
+        PLAYER2_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of a piece on a square.
+     *
+     * @param square The bit index of the square
+     * @param color The color of the piece
+     * @param king Whether the piece is a king
+     * @return The key
+     */
+    static long piece(int square, int color, boolean king) {
+        return PIECES[square * 4 + (color - 1) * 2 + (king ? 1 : 0)];
+    }
+
+    /**
+     * Returns the key for a piece that has to keep jumping.
+     *
+     * @param square The bit index of the jumping piece, or BitBoard.NONE
+     * @return The key, 0 if no piece is jumping
+     */
+    static long jumper(int square) {
+        return square == BitBoard.NONE ? 0L : JUMPERS[square];
+    }
+
+    /**
+     * Computes the hash of a position from scratch.
+     *
+     * @param position The pieces on the board
+     * @param player1 Whether player 1 is to move
+     * @param jumper The square of the jumping piece, or BitBoard.NONE
+     * @return The hash
+     */
+    static long hash(BitBoard position, boolean player1, int jumper) {
+        long hash = player1 ? 0L : PLAYER2_TO_MOVE;
+        for (long pieces = position.occupied(); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            hash ^= piece(square, position.colorAt(square), position.isKing(square));
+        }
+        return hash ^ jumper(jumper);
+    }
+}
@@ -1,20 +1,83 @@
 package org.cis1200.checkers;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 class Checkers {
-    private Piece[][] board;
+    // one shared, immutable Piece per square, color and rank, handed out by getPiece
+    private static final Piece[] PIECES = new Piece[BitBoard.SIZE * 4];
+
+    static {
+        for (int square = 0; square < BitBoard.SIZE; square++) {
+            int row = BitBoard.row(square);
+            int col = BitBoard.col(square);
+            if (row != BitBoard.NONE) {
+                PIECES[square * 4] = new SoldierPiece(row, col, 1);
+                PIECES[square * 4 + 1] = new KingPiece(row, col, 1);
+                PIECES[square * 4 + 2] = new SoldierPiece(row, col, 2);
+                PIECES[square * 4 + 3] = new KingPiece(row, col, 2);
+            }
+        }
+    }
+
+    // layout of historyStates: numPlayer1 in bits 0-5, numPlayer2 in bits 6-11,
+    // jumper + 1 in bits 12-17, then the side to move and the captured rank,
+    // and kingMoves in bits 20-26
+    private static final int STATE_PLAYER1 = 1 << 18;
+    private static final int STATE_CAPTURED_KING = 1 << 19;
+    private static final int STATE_KING_MOVES_SHIFT = 20;
+
+    // plies of king moves without a capture after which the game is drawn,
+    // 25 moves by each player
+    static final int KING_MOVES_DRAW = 50;
+
+    static final String SAVE_FILE = "game_state.bin";
+    // save format: magic, version, the three bitboards, side to move and
+    // jumper + 1 as bytes, then the history length and one long per move
+    // holding the state it replaced above the move
+    private static final int SAVE_MAGIC = 0x434B5253;
+    // 2: piece counts no longer stored
+    private static final byte SAVE_VERSION = 2;
+    private static final int SAVE_HEADER_BYTES = 4 + 1 + 3 * Long.BYTES + 2 + 4;
+
+    private BitBoard position;
     int numPlayer1;
     int numPlayer2;
     boolean player1;
-    private Stack<Piece[][]> moveHistory = new Stack<>();
-    private Stack<String> playerHistory = new Stack<>();
+    // square of the piece that has to keep jumping, or BitBoard.NONE
+    private int jumper = BitBoard.NONE;
+    // Zobrist hash of the position, side to move and jumping piece
+    private long hash;
+    // consecutive turns made by moving a king without capturing
+    private int kingMoves;
+    // moves played so far and the state each one replaced, see makeMove
+    private int[] historyMoves = new int[64];
+    private int[] historyStates = new int[64];
+    private long[] historyHashes = new long[64];
+    private int historySize;
+    // how often each earlier position at the start of a turn occurred
+    private final RepetitionTable repetitions = new RepetitionTable();
     private Stack<Piece> deletedPieces = new Stack<>();
-    // stores all possible jumps for each piece
+    // stores all possible jumps for each piece, for the position with hash
+    // possibleJumpsHash if possibleJumpsValid
     private HashMap<Piece, HashMap<Piece, List<String>>> possibleJumps = new HashMap<>();
+    private long possibleJumpsHash;
+    private boolean possibleJumpsValid;
+    // which pieces can capture, see capturingPieces
+    private final CaptureIndex captureIndex = new CaptureIndex();
     // stores all possible jumps for some piece after a jump
     private HashMap<Piece, HashMap<Piece, List<String>>> nextJump = new HashMap<>();
+    // reusable buffer for the move generator
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+    private final Random random = new Random();
+    // records accepted moves when the game is journaled, see GameJournal
+    private GameJournal journal;
 
     /**
      * Constructor sets up game state.
@@ -23,18 +86,64 @@ class Checkers {
         reset();
     }
 
+    /**
+     * Copies another game, including its move history, so the copy can be
+     * searched on its own thread.
+     *
+     * @param other The game to copy
+     */
+    Checkers(Checkers other) {
+        copyFrom(other);
+    }
+
+    private void copyFrom(Checkers other) {
+        position = other.position.copy();
+        numPlayer1 = other.numPlayer1;
+        numPlayer2 = other.numPlayer2;
+        player1 = other.player1;
+        jumper = other.jumper;
+        hash = other.hash;
+        kingMoves = other.kingMoves;
+        historyMoves = Arrays.copyOf(other.historyMoves, other.historyMoves.length);
+        historyStates = Arrays.copyOf(other.historyStates, other.historyStates.length);
+        historyHashes = Arrays.copyOf(other.historyHashes, other.historyHashes.length);
+        historySize = other.historySize;
+        rebuildRepetitions();
+        deletedPieces = new Stack<>();
+        deletedPieces.addAll(other.deletedPieces);
+        clearPossibleJumps();
+        captureIndex.invalidate();
+        updateNextJump();
+    }
+
     /**
      * Resets the game to its initial state.
      */
     public void reset() {
-        board = new Piece[10][10];
+        position = new BitBoard();
         numPlayer1 = 20;
         numPlayer2 = 20;
         player1 = true;
-        moveHistory = new Stack<>();
+        jumper = BitBoard.NONE;
+        hash = 0L;
+        kingMoves = 0;
+        historySize = 0;
+        repetitions.clear();
         fillBoard();
-        moveHistory.push(deepCloneBoard());
-        playerHistory.push(Boolean.toString(player1) + " " + numPlayer1 + " " + numPlayer2);
+        journalSnapshot();
+    }
+
+    void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Lets the journal know the game changed other than by a move.
+     */
+    private void journalSnapshot() {
+        if (journal != null) {
+            journal.snapshot();
+        }
     }
 
     /**
@@ -45,25 +154,115 @@ class Checkers {
             for (int j = 0; j < 10; j++) {
                 if ((i + j) % 2 == 1) {
                     if (i < 4) {
-                        board[i][j] = new SoldierPiece(i, j, 2);
+                        putPiece(BitBoard.square(i, j), 2, false);
                     } else if (i > 5) {
-                        board[i][j] = new SoldierPiece(i, j, 1);
+                        putPiece(BitBoard.square(i, j), 1, false);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Sets up a position from a FEN string such as "W:W31-50:B1-20".
+     *
+     * The first letter is the side to move, followed by the white (player 1)
+     * and black (player 2) pieces in standard square numbers. A "K" in front
+     * of a number marks a king and "a-b" is a range of squares. The move
+     * history is cleared.
+     *
+     * @param fen The position
+     */
+    public void setPosition(String fen) {
+        String[] parts = fen.trim().replace(".", "").split(":");
+        if (parts.length != 3 || (!parts[0].equals("W") && !parts[0].equals("B"))) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        BitBoard loaded = new BitBoard();
+        for (int k = 1; k < 3; k++) {
+            String pieces = parts[k].trim();
+            int color = pieces.startsWith("W") ? 1 : 2;
+            if (pieces.isEmpty() || (pieces.charAt(0) != 'W' && pieces.charAt(0) != 'B')) {
+                throw new IllegalArgumentException("Invalid FEN: " + fen);
+            }
+            for (String piece : pieces.substring(1).split(",")) {
+                piece = piece.trim();
+                if (piece.isEmpty()) {
+                    continue;
+                }
+                boolean king = piece.startsWith("K");
+                String[] range = (king ? piece.substring(1) : piece).split("-");
+                int first = Integer.parseInt(range[0]);
+                int last = range.length > 1 ? Integer.parseInt(range[1]) : first;
+                if (first < 1 || last > 50) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                for (int number = first; number <= last; number++) {
+                    loaded.put(BitBoard.fromNumber(number), color, king);
+                }
+            }
+        }
+        setPosition(loaded, parts[0].equals("W"));
+    }
+
+    /**
+     * Sets up a position at the start of a turn. The move history is
+     * cleared.
+     *
+     * @param position The pieces, owned by the game from now on
+     * @param player1 Whether player 1 is to move
+     */
+    void setPosition(BitBoard position, boolean player1) {
+        this.position = position;
+        this.player1 = player1;
+        numPlayer1 = Long.bitCount(position.player1Pieces);
+        numPlayer2 = Long.bitCount(position.player2Pieces);
+        jumper = BitBoard.NONE;
+        hash = Zobrist.hash(position, player1, jumper);
+        kingMoves = 0;
+        historySize = 0;
+        repetitions.clear();
+        clearPossibleJumps();
+        captureIndex.invalidate();
+        nextJump.clear();
+        journalSnapshot();
+    }
+
+    /**
+     * Returns the current position as a FEN string, see setPosition.
+     *
+     * @return The position
+     */
+    public String getFen() {
+        StringBuilder fen = new StringBuilder(player1 ? "W" : "B");
+        for (int color = 1; color <= 2; color++) {
+            fen.append(color == 1 ? ":W" : ":B");
+            boolean first = true;
+            for (long pieces = position.pieces(color); pieces != 0; pieces &= pieces - 1) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                if (!first) {
+                    fen.append(',');
+                }
+                first = false;
+                if (position.isKing(square)) {
+                    fen.append('K');
+                }
+                fen.append(BitBoard.number(square));
+            }
+        }
+        return fen.toString();
+    }
+
     /**
      * Displays the board.
      */
     public void displayBoard() {
         for (int i = 0; i < 10; i++) {
             for (int j = 0; j < 10; j++) {
-                if (board[i][j] == null) {
+                if (getPiece(i, j) == null) {
                     System.out.print(" |");
                 } else {
-                    System.out.print(board[i][j].getColor() + "|" );
+                    System.out.print(getPiece(i, j).getColor() + "|" );
                 }
             }
             System.out.println();
@@ -76,7 +275,44 @@ class Checkers {
      * @return The board
      */
     public Piece getPiece(int row, int col) {
-        return board[row][col];
+        int square = BitBoard.square(row, col);
+        if (square == BitBoard.NONE) {
+            return null;
+        }
+        return pieceAt(square);
+    }
+
+    /**
+     * Returns the shared piece object for a square of the bitboard.
+     *
+     * @param square The bit index of the square
+     * @return The piece on that square, or null if it is empty
+     */
+    Piece pieceAt(int square) {
+        int color = position.colorAt(square);
+        if (color == 0) {
+            return null;
+        }
+        return PIECES[square * 4 + (color - 1) * 2 + (position.isKing(square) ? 1 : 0)];
+    }
+
+    /**
+     * Returns the bitboard holding the current position.
+     *
+     * @return The position
+     */
+    BitBoard getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the piece that has to keep capturing, if any.
+     *
+     * @return The bit index of the piece, or BitBoard.NONE at the start of
+     *         a turn
+     */
+    int getJumper() {
+        return jumper;
     }
 
     /**
@@ -86,39 +322,223 @@ class Checkers {
      * @param col The column of the piece
      */
     public void deletePiece (int row, int col) {
-        deletedPieces.add(board[row][col]);
-        if (board[row][col].getColor() == 1) {
+        Piece piece = getPiece(row, col);
+        deletedPieces.add(piece);
+        if (piece.getColor() == 1) {
             numPlayer1--;
         } else {
             numPlayer2--;
         }
-        board[row][col] = null;
+        removePiece(BitBoard.square(row, col));
+        journalSnapshot();
     }
 
     public void setPiece (int color, int row, int col) {
-        board[row][col] = new SoldierPiece(row, col, color);
+        putPiece(BitBoard.square(row, col), color, false);
+        journalSnapshot();
+    }
+
+    /**
+     * Places a piece on the board and updates the hash.
+     *
+     * @param square The bit index of the square
+     * @param color The color of the piece
+     * @param king Whether the piece is a king
+     */
+    private void putPiece(int square, int color, boolean king) {
+        removePiece(square);
+        position.put(square, color, king);
+        hash ^= Zobrist.piece(square, color, king);
+    }
+
+    /**
+     * Removes the piece on a square, if any, and updates the hash.
+     *
+     * @param square The bit index of the square
+     */
+    private void removePiece(int square) {
+        int color = position.colorAt(square);
+        if (color != 0) {
+            hash ^= Zobrist.piece(square, color, position.isKing(square));
+            position.remove(square);
+        }
+    }
+
+    /**
+     * Returns the Zobrist hash of the current position.
+     *
+     * @return The hash
+     */
+    public long getHash() {
+        return hash;
     }
 
     /**
      * Undoes the last move.
      */
     public void undo() {
-        if (moveHistory.size() >= 2){
-            moveHistory.pop();
-            playerHistory.pop();
-            board = moveHistory.peek().clone();
-            board = deepCloneBoard();
-            String[] playerInfo = playerHistory.peek().split(" ");
-            player1 = Boolean.parseBoolean(playerInfo[0]);
-            numPlayer1 = Integer.parseInt(playerInfo[1]);
-            numPlayer2 = Integer.parseInt(playerInfo[2]);
-            if (!player1) {
-                undo();
-            }
-            if (!possibleJumps.isEmpty()){
-                possibleJumps.clear();
+        long start = Metrics.start();
+        if (historySize > 0){
+            unmakeMove();
+            while (!player1 && historySize > 0) {
+                unmakeMove();
             }
+            clearPossibleJumps();
+            updateNextJump();
             currentPlayerCanJumpPiece();
+            if (journal != null) {
+                journal.appendUndo();
+            }
+        }
+        Metrics.stop(Metrics.Timer.UNDO, start);
+    }
+
+    /**
+     * Plays a move produced by generateMoves without validating it.
+     *
+     * Only what the move changes is recorded (the move itself plus the side to
+     * move, jumping piece, piece counts, king move count and captured rank it
+     * overwrote), so unmakeMove can take it back in constant time.
+     *
+     * @param move The packed move
+     */
+    public void makeMove(int move) {
+        if (historySize == historyMoves.length) {
+            historyMoves = Arrays.copyOf(historyMoves, historySize * 2);
+            historyStates = Arrays.copyOf(historyStates, historySize * 2);
+            historyHashes = Arrays.copyOf(historyHashes, historySize * 2);
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = Move.captured(move);
+        int color = player1 ? 1 : 2;
+        boolean king = position.isKing(from);
+        historyMoves[historySize] = move;
+        historyStates[historySize] = packState(captured != BitBoard.NONE && position.isKing(captured));
+        historyHashes[historySize] = hash;
+        historySize++;
+        if (jumper == BitBoard.NONE) {
+            repetitions.add(hash);
+        }
+        hash ^= Zobrist.jumper(jumper);
+        if (captured != BitBoard.NONE) {
+            hash ^= Zobrist.piece(captured, 3 - color, position.isKing(captured));
+            position.remove(captured);
+            if (color == 1) {
+                numPlayer2--;
+            } else {
+                numPlayer1--;
+            }
+        }
+        position.move(from, to);
+        hash ^= Zobrist.piece(from, color, king);
+        if (Move.isPromotion(move)) {
+            position.put(to, color, true);
+            king = true;
+        }
+        hash ^= Zobrist.piece(to, color, king);
+        // king is also set for a soldier that has just been crowned
+        if (captured != BitBoard.NONE || !king || Move.isPromotion(move)) {
+            kingMoves = 0;
+        } else if (kingMoves < 0x7F) {
+            kingMoves++;
+        }
+        // a piece that has just captured keeps the turn while it can capture
+        // again, still blocked by the pieces it has captured; a soldier is
+        // only crowned once its sequence is over
+        if (captured != BitBoard.NONE && !Move.isPromotion(move)
+                && MoveGenerator.canCapture(position, to, color, capturedThisTurn())) {
+            jumper = to;
+            hash ^= Zobrist.jumper(jumper);
+        } else {
+            jumper = BitBoard.NONE;
+            player1 = !player1;
+            hash ^= Zobrist.PLAYER2_TO_MOVE;
+        }
+    }
+
+    /**
+     * Takes back the last move played with makeMove.
+     */
+    public void unmakeMove() {
+        historySize--;
+        int move = historyMoves[historySize];
+        int state = historyStates[historySize];
+        hash = historyHashes[historySize];
+        if ((state & (0x3F << 12)) == 0) {
+            repetitions.remove(hash);
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = Move.captured(move);
+        player1 = (state & STATE_PLAYER1) != 0;
+        jumper = ((state >>> 12) & 0x3F) - 1;
+        numPlayer1 = state & 0x3F;
+        numPlayer2 = (state >>> 6) & 0x3F;
+        kingMoves = (state >>> STATE_KING_MOVES_SHIFT) & 0x7F;
+        int color = player1 ? 1 : 2;
+        position.move(to, from);
+        if (Move.isPromotion(move)) {
+            position.put(from, color, false);
+        }
+        if (captured != BitBoard.NONE) {
+            position.put(captured, 3 - color, (state & STATE_CAPTURED_KING) != 0);
+        }
+    }
+
+    /**
+     * Returns the pieces captured so far by the capture sequence under way.
+     * They are already off the board, but until the sequence ends they
+     * still block the capturing piece and cannot be captured again.
+     *
+     * @return The squares of the pieces, 0 at the start of a turn
+     */
+    long jumpedPieces() {
+        return jumper == BitBoard.NONE ? 0 : capturedThisTurn();
+    }
+
+    /**
+     * Returns the squares captured by the hops of the history since the
+     * last one played at the start of a turn, that one included.
+     */
+    private long capturedThisTurn() {
+        long captured = 0;
+        for (int k = historySize - 1; k >= 0; k--) {
+            captured |= Move.capturedMask(historyMoves[k]);
+            if ((historyStates[k] & (0x3F << 12)) == 0) {
+                break;
+            }
+        }
+        return captured;
+    }
+
+    /**
+     * Counts the earlier positions of the move history again.
+     */
+    private void rebuildRepetitions() {
+        repetitions.clear();
+        for (int k = 0; k < historySize; k++) {
+            // states with no jumper are the starts of turns
+            if ((historyStates[k] & (0x3F << 12)) == 0) {
+                repetitions.add(historyHashes[k]);
+            }
+        }
+    }
+
+    private int packState(boolean capturedKing) {
+        return numPlayer1 | (numPlayer2 << 6) | ((jumper + 1) << 12)
+                | (player1 ? STATE_PLAYER1 : 0) | (capturedKing ? STATE_CAPTURED_KING : 0)
+                | (kingMoves << STATE_KING_MOVES_SHIFT);
+    }
+
+    /**
+     * Rebuilds nextJump for the piece that has to keep jumping, if any.
+     */
+    private void updateNextJump() {
+        nextJump.clear();
+        if (jumper != BitBoard.NONE) {
+            Piece piece = pieceAt(jumper);
+            nextJump.put(piece, piece instanceof KingPiece ? canJumpPieceKing(piece) : canJumpPieceSoldier(piece));
         }
     }
 
@@ -126,15 +546,21 @@ class Checkers {
         Piece[][] clonedBoard = new Piece[10][10];
         for (int row = 0; row < 10; row++) {
             for (int col = 0; col < 10; col++) {
-                if (board[row][col] != null) {
-                    clonedBoard[row][col] = board[row][col].clonePiece();
+                Piece piece = getPiece(row, col);
+                if (piece != null) {
+                    clonedBoard[row][col] = piece.clonePiece();
                 }
             }
         }
         return clonedBoard;
     }
-    public Stack<Piece[][]> getMoveHistory() {
-        return (Stack<Piece[][]>) moveHistory.clone();
+    /**
+     * Returns the moves played since the game was reset or loaded.
+     *
+     * @return The packed moves, oldest first
+     */
+    public int[] getMoveHistory() {
+        return Arrays.copyOf(historyMoves, historySize);
     }
 
     /**
@@ -142,7 +568,8 @@ class Checkers {
      * @param piece The piece to make a king
      */
     public void makeKing(Piece piece) {
-        board[piece.getRow()][piece.getCol()] = new KingPiece(piece.getRow(), piece.getCol(), piece.getColor());
+        putPiece(BitBoard.square(piece.getRow(), piece.getCol()), piece.getColor(), true);
+        journalSnapshot();
     }
 
     /**
@@ -173,6 +600,7 @@ class Checkers {
 
     public void clearPossibleJumps() {
         possibleJumps.clear();
+        possibleJumpsValid = false;
     }
 
     /**
@@ -216,28 +644,75 @@ class Checkers {
      * @param newCol The new column
      */
     public void transferPiece (Piece piece, int newRow, int newCol) {
-        if (piece instanceof KingPiece) {
-            board[newRow][newCol] = new KingPiece(newRow, newCol, piece.getColor());
-            board[piece.getRow()][piece.getCol()] = null;
-        } else {
-            board[newRow][newCol] = new SoldierPiece(newRow, newCol, piece.getColor());
-            board[piece.getRow()][piece.getCol()] = null;
-        }
+        putPiece(BitBoard.square(newRow, newCol), piece.getColor(), piece instanceof KingPiece);
+        removePiece(BitBoard.square(piece.getRow(), piece.getCol()));
+        journalSnapshot();
     }
 
     /**
-     * Checks if a player has won.
+     * Checks if a player has won, see getResult.
      *
-     * @return The player that has won
+     * @return The player that has won, 0 if nobody has (yet)
      */
     public int checkWinner() {
+        return getResult().winner();
+    }
+
+    /**
+     * Decides whether the game is over. A player loses with no pieces left
+     * or no legal move on their turn, and the game is drawn when a position
+     * occurs for the third time or once only kings have moved, without
+     * capturing, for 25 moves by each player.
+     *
+     * This takes constant time: mobility is checked with bitboard shifts
+     * (see MoveGenerator.hasMoves), and the king moves and the occurrences
+     * of each position are counted by makeMove.
+     *
+     * @return The result
+     */
+    GameResult getResult() {
         if (numPlayer1 == 0) {
-            return 2;
+            return GameResult.PLAYER2_WINS;
         }
         if (numPlayer2 == 0) {
-            return 1;
+            return GameResult.PLAYER1_WINS;
+        }
+        if (!MoveGenerator.hasMoves(position, player1, jumper)) {
+            return player1 ? GameResult.PLAYER2_WINS : GameResult.PLAYER1_WINS;
         }
-        return 0;
+        if (isDraw()) {
+            return GameResult.DRAW;
+        }
+        return GameResult.ONGOING;
+    }
+
+    /**
+     * Checks the draw rules, without looking at whether anyone has won.
+     *
+     * @return True if the game is drawn
+     */
+    boolean isDraw() {
+        return kingMoves >= KING_MOVES_DRAW || getRepetitions() >= 3;
+    }
+
+    /**
+     * Returns how many times the current position has occurred with the same
+     * player to move, this time included. Only positions at the start of a
+     * turn count. Positions before a capture or a soldier move cannot occur
+     * again, so their entries never match.
+     *
+     * @return The number of occurrences
+     */
+    int getRepetitions() {
+        return jumper == BitBoard.NONE ? repetitions.count(hash) + 1 : 1;
+    }
+
+    /**
+     * @return The number of turns in a row made by moving a king without
+     *         capturing
+     */
+    int getKingMoves() {
+        return kingMoves;
     }
 
     /**
@@ -250,413 +725,280 @@ class Checkers {
      * @return True if the move is successful, false otherwise
      */
     public boolean movePiece(int row, int col, int newRow, int newCol) {
-        Piece piece = getPiece(row, col);
-        Piece target = getPiece(newRow, newCol);
-        if (piece == null) {
-            return false;
-        }
-        if (target != null) {
-            return false;
-        }
-        if (piece.getColor() == 1 && !player1) {
-            return false;
+        long start = Metrics.start();
+        boolean moved = playMove(row, col, newRow, newCol);
+        Metrics.stop(Metrics.Timer.MOVE_VALIDATION, start);
+        if (moved) {
+            Metrics.countMove();
+            if (Metrics.ENABLED && getResult().isOver()) {
+                Metrics.countGame();
+            }
         }
-        if (piece.getColor() == 2 && player1) {
+        return moved;
+    }
+
+    /**
+     * Plays a move if it is legal; see movePiece.
+     */
+    private boolean playMove(int row, int col, int newRow, int newCol) {
+        int from = BitBoard.square(row, col);
+        int to = BitBoard.square(newRow, newCol);
+        if (from == BitBoard.NONE || to == BitBoard.NONE) {
             return false;
         }
-        if (currentPlayerCanJumpPiece()) {
-            String position = Integer.toString(newRow) + Integer.toString(newCol);
-            if (nextJump.isEmpty()) {
-                if (!possibleJumps.containsKey(piece)) {
-                    return false;
+        int count = generateMoves(moveBuffer);
+        for (int k = 0; k < count; k++) {
+            int move = moveBuffer[k];
+            if (Move.from(move) == from && Move.to(move) == to) {
+                if (Move.isCapture(move)) {
+                    deletedPieces.add(pieceAt(Move.captured(move)));
                 }
-                if (!getPossiblePositions(piece).contains(position)) {
-                    return false;
-                }
-            } else {
-                if (!nextJump.containsKey(piece)) {
-                    return false;
+                makeMove(move);
+                clearPossibleJumps();
+                updateNextJump();
+                if (journal != null) {
+                    journal.append(move);
                 }
-                if (!nextJump.get(piece).containsKey(getPieceToJump(piece, position))) {
-                    return false;
-                }
-                if (!nextJump.get(piece).get(getPieceToJump(piece, position)).contains(position)) {
-                    return false;
-                }
-                nextJump.clear();
+                return true;
             }
-
-            Piece pieceToJump = getPieceToJump(piece, position);
-            deletePiece(pieceToJump.getRow(), pieceToJump.getCol());
-            transferPiece(piece, newRow, newCol);
-            piece = getPiece(newRow, newCol);
-            clearPossibleJumps();
-            // make king if piece reaches the end of the board
-            if (piece.getRow() == 0 && piece.getColor() == 1) {
-                makeKing(piece);
-                piece = getPiece(newRow, newCol);
-            } else if (piece.getRow() == 9 && piece.getColor() == 2) {
-                makeKing(piece);
-                piece = getPiece(newRow, newCol);
-            }
-            if (piece instanceof KingPiece) {
-                nextJump.put(piece, canJumpPieceKing(piece));
-                if (nextJump.get(piece).isEmpty()) {
-                    player1 = !player1;
-                    nextJump.clear();
-                }
-            } else {
-                nextJump.put(piece, canJumpPieceSoldier(piece));
-                if (nextJump.get(piece).isEmpty()) {
-                    player1 = !player1;
-                    nextJump.clear();
-                }
-            }
-            moveHistory.push(deepCloneBoard());
-            playerHistory.push(Boolean.toString(player1) + " " + numPlayer1 + " " + numPlayer2);
-            return true;
         }
-        if (!piece.canMoveTo(newRow, newCol)) {
-            return false;
-        }
-        if (piece instanceof KingPiece) {
-            board[newRow][newCol] = new KingPiece(newRow, newCol, piece.getColor());
-            board[row][col] = null;
-        } else {
-            board[newRow][newCol] = new SoldierPiece(newRow, newCol, piece.getColor());
-            board[row][col] = null;
-        }
-        // make king if piece reaches the end of the board
-        piece = getPiece(newRow, newCol);
-        if (piece.getRow() == 0 && piece.getColor() == 1) {
-            makeKing(piece);
-        } else if (piece.getRow() == 9 && piece.getColor() == 2) {
-            makeKing(piece);
-        }
-        player1 = !player1;
-        moveHistory.push(deepCloneBoard());
-        playerHistory.push(Boolean.toString(player1) + " " + numPlayer1 + " " + numPlayer2);
-        return true;
+        return false;
     }
 
     /**
-     * Checks if current player can jump a piece.
+     * Checks if current player can jump a piece, and records the jumps of
+     * each piece that can for getPossiblePositions and getPieceToJump. The
+     * jumps are only collected again once the position has changed, so
+     * repeated calls are cheap.
      */
     public boolean currentPlayerCanJumpPiece() {
-        for (int i = 0; i < 10; i++) {
-            for (int j = 0; j < 10; j++) {
-                Piece piece = getPiece(i, j);
-                if (piece != null && piece.getColor() == (player1 ? 1 : 2)) {
-                    if (piece instanceof KingPiece) {
-                        HashMap<Piece, List<String>> jumps = canJumpPieceKing(piece);
-                        if (!jumps.isEmpty()) {
-                            possibleJumps.put(piece, jumps);
-                        }
-                    } else {
-                        HashMap<Piece, List<String>> jumps = canJumpPieceSoldier(piece);
-                        if (!jumps.isEmpty()) {
-                            possibleJumps.put(piece, jumps);
-                        }
-                    }
-                }
+        long start = Metrics.start();
+        if (!possibleJumpsValid || possibleJumpsHash != hash) {
+            possibleJumps.clear();
+            int count = legalCaptures(capturers());
+            for (long pieces = capturingPieces(count); pieces != 0; pieces &= pieces - 1) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                possibleJumps.put(pieceAt(square), toJumpMap(count, square));
             }
+            possibleJumpsHash = hash;
+            possibleJumpsValid = true;
         }
+        Metrics.stop(Metrics.Timer.JUMP_DETECTION, start);
         return !possibleJumps.isEmpty();
     }
 
     /**
-     * Returns all possible moves for a soldier piece.
+     * Returns the pieces of the side to move that must capture: those that
+     * can take the most pieces, and only the jumping piece while a capture
+     * sequence is under way.
+     *
+     * @return The squares of the pieces
+     */
+    long capturingPieces() {
+        return capturingPieces(legalCaptures(capturers()));
+    }
+
+    /**
+     * Returns the pieces of the side to move that can capture at all, from
+     * the capture index.
+     */
+    private long capturers() {
+        long pieces = captureIndex.capturers(position, player1 ? 1 : 2);
+        return jumper == BitBoard.NONE ? pieces : pieces & (1L << jumper);
+    }
+
+    /**
+     * Writes the legal captures of some pieces of the side to move into the
+     * move buffer: those that start one of the longest capture sequences.
+     *
+     * @param pieces The pieces, including all that can capture
+     * @return The number of captures
+     */
+    private int legalCaptures(long pieces) {
+        return MoveGenerator.longestCaptures(position, player1 ? 1 : 2, pieces, jumpedPieces(), moveBuffer, 0);
+    }
+
+    /**
+     * @return The pieces making the captures in the move buffer
+     */
+    private long capturingPieces(int count) {
+        long pieces = 0;
+        for (int k = 0; k < count; k++) {
+            pieces |= 1L << Move.from(moveBuffer[k]);
+        }
+        return pieces;
+    }
+
+    /**
+     * Returns the captures a soldier may make now, under the maximum
+     * capture rule.
      *
      * @param piece The piece to move
      * @return A list of all possible moves
      */
     public HashMap<Piece, List<String>> canJumpPieceSoldier(Piece piece) {
-        HashMap<Piece, List<String>> pieces = new HashMap<>();
-        int i = piece.getRow();
-        int j = piece.getCol();
-        if (i - 1 > 0 && j + 1 < 9) {
-            Piece topRight = getPiece(i - 1, j + 1);
-            if (topRight != null && topRight.getColor() == (player1 ? 2 : 1)) {
-                Piece jump = getPiece(i - 2, j+ 2);
-                if (jump == null) {
-                    String value = Integer.toString(i - 2) + Integer.toString(j + 2);
-                    ArrayList<String> positions = new ArrayList<>(List.of(value));
-                    pieces.put(topRight, positions);
-                }
-            }
-        }
-        if (i - 1 > 0 && j - 1 > 0) {
-            Piece topLeft = getPiece(i - 1, j - 1);
-            if (topLeft != null && topLeft.getColor() == (player1 ? 2 : 1)) {
-                Piece jump = getPiece(i - 2, j - 2);
-                if (jump == null) {
-                    String value = Integer.toString(i - 2) + Integer.toString(j - 2);
-                    ArrayList<String> positions = new ArrayList<>(List.of(value));
-                    pieces.put(topLeft, positions);
-                }
-            }
-        }
-        if (i + 1 < 9 && j + 1 < 9) {
-            Piece bottomRight = getPiece(i + 1, j + 1);
-            if (bottomRight != null && bottomRight.getColor() == (player1 ? 2 : 1)) {
-                Piece jump = getPiece(i + 2, j + 2);
-                if (jump == null) {
-                    String value = Integer.toString(i + 2) + Integer.toString(j + 2);
-                    ArrayList<String> positions = new ArrayList<>(List.of(value));
-                    pieces.put(bottomRight, positions);
-                }
-            }
-        }
-        if (i + 1 < 9 && j - 1 > 0) {
-            Piece bottomLeft = getPiece(i + 1, j - 1);
-            if (bottomLeft != null && bottomLeft.getColor() == (player1 ? 2 : 1)) {
-                Piece jump = getPiece(i + 2, j - 2);
-                if (jump == null) {
-                    String value = Integer.toString(i + 2) + Integer.toString(j - 2);
-                    ArrayList<String> positions = new ArrayList<>(List.of(value));
-                    pieces.put(bottomLeft, positions);
-                }
-            }
-        }
-        return pieces;
+        return canJumpPiece(piece);
     }
 
     /**
-     * Returns all possible moves for a king piece.
+     * Returns the captures a king may make now, under the maximum capture
+     * rule.
      *
      * @param piece The piece to move
      * @return A list of all possible moves
      */
     public HashMap<Piece, List<String>> canJumpPieceKing(Piece piece) {
+        return canJumpPiece(piece);
+    }
+
+    private HashMap<Piece, List<String>> canJumpPiece(Piece piece) {
+        int square = BitBoard.square(piece.getRow(), piece.getCol());
+        return toJumpMap(legalCaptures(capturers()), square);
+    }
+
+    /**
+     * Groups the captures of one piece in the move buffer by the piece they
+     * capture.
+     *
+     * @param count The number of moves in the buffer
+     * @param square The square of the capturing piece
+     * @return The landing squares for each piece that can be captured
+     */
+    private HashMap<Piece, List<String>> toJumpMap(int count, int square) {
         HashMap<Piece, List<String>> pieces = new HashMap<>();
-        int i = piece.getRow();
-        int j = piece.getCol();
-        while (i + 1 < 9 && j + 1 < 9) {
-            Piece bottomRight = getPiece(i + 1, j + 1);
-            if (bottomRight != null && bottomRight.getColor() == (player1 ? 2 : 1)) {
-                ArrayList<String> positions = new ArrayList<>();
-                while (i + 2 < 10 && j + 2 < 10) {
-                    if (getPiece(i + 2, j + 2) == null) {
-                        String value = Integer.toString(i + 2) + Integer.toString(j + 2);
-                        positions.add(value);
-                    }else {
-                        break;
-                    }
-                    j += 1;
-                    i += 1;
-                }
-                if (!positions.isEmpty()) {
-                    pieces.put(bottomRight, positions);
-                }
-                break;
-            } else if (bottomRight == null) {
-                j += 1;
-                i += 1;
-            } else {
-                break;
-            }
-        }
-        i = piece.getRow();
-        j = piece.getCol();
-        while (i + 1 < 9 && j - 1 > 0) {
-            Piece bottomLeft = getPiece(i + 1, j - 1);
-            if (bottomLeft != null && bottomLeft.getColor() == (player1 ? 2 : 1)) {
-                ArrayList<String> positions = new ArrayList<>();
-                while (i + 2 < 10 && j - 2 >= 0) {
-                    if (getPiece(i + 2, j - 2) == null) {
-                        String value = Integer.toString(i + 2) + Integer.toString(j - 2);
-                        positions.add(value);
-                    }else {
-                        break;
-                    }
-                    j -= 1;
-                    i += 1;
-                }
-                if (!positions.isEmpty()) {
-                    pieces.put(bottomLeft, positions);
-                }
-                break;
-            }else if (bottomLeft == null){
-                j -= 1;
-                i += 1;
-            }else {
-                break;
-            }
-        }
-        i = piece.getRow();
-        j = piece.getCol();
-        while (i - 1 > 0 && j + 1 < 9) {
-            Piece topRight = getPiece(i - 1, j + 1);
-            if (topRight != null && topRight.getColor() == (player1 ? 2 : 1)) {
-                ArrayList<String> positions = new ArrayList<>();
-                while (i - 2 >= 0 && j + 2 < 10) {
-                    if (getPiece(i - 2, j + 2) == null) {
-                        String value = Integer.toString(i - 2) + Integer.toString(j + 2);
-                        positions.add(value);
-                    }else {
-                        break;
-                    }
-                    j += 1;
-                    i -= 1;
-                }
-                if (!positions.isEmpty()) {
-                    pieces.put(topRight, positions);
-                }
-                break;
-            }else if (topRight == null){
-                j += 1;
-                i -= 1;
-            }else {
-                break;
-            }
-        }
-        i = piece.getRow();
-        j = piece.getCol();
-        while (i - 1 > 0 && j - 1 > 0) {
-            Piece topLeft = getPiece(i - 1, j - 1);
-            if (topLeft != null && topLeft.getColor() == (player1 ? 2 : 1)) {
-                ArrayList<String> positions = new ArrayList<>();
-                while (i - 2 >= 0 && j - 2 >= 0) {
-                    if (getPiece(i - 2, j - 2) == null) {
-                        String value = Integer.toString(i - 2) + Integer.toString(j - 2);
-                        positions.add(value);
-                    }else {
-                        break;
-                    }
-                    j -= 1;
-                    i -= 1;
-                }
-                if (!positions.isEmpty()) {
-                    pieces.put(topLeft, positions);
-                }
-                break;
-            }else if (topLeft == null){
-                j -= 1;
-                i -= 1;
-            }else {
-                break;
+        for (int k = 0; k < count; k++) {
+            if (Move.from(moveBuffer[k]) == square) {
+                Piece captured = pieceAt(Move.captured(moveBuffer[k]));
+                pieces.computeIfAbsent(captured, p -> new ArrayList<>()).add(squareName(Move.to(moveBuffer[k])));
             }
         }
         return pieces;
     }
 
     /**
-     * Returns all possible moves for a king piece.
+     * Returns the two-digit "rowcol" name of a square used by the jump maps.
+     */
+    private static String squareName(int square) {
+        return Integer.toString(BitBoard.row(square)) + Integer.toString(BitBoard.col(square));
+    }
+
+    /**
+     * Writes all legal moves for the current player into a buffer.
      *
-     * @param piece The piece to move
-     * @return A list of all possible moves
+     * @param moves A buffer of at least MoveGenerator.MAX_MOVES entries
+     * @return The number of moves written
      */
-    private List<String> getPossibleKingMoves(Piece piece){
-        List<String> moves = new ArrayList<>();
-        int i = piece.getRow();
-        int j = piece.getCol();
-        while (i + 1 < 10 && j + 1 < 10) {
-            if (getPiece(i + 1, j + 1) == null) {
-                moves.add(Integer.toString(i + 1) + Integer.toString(j + 1));
-            } else {
-                break;
-            }
-            j += 1;
-            i += 1;
-        }
-        i = piece.getRow();
-        j = piece.getCol();
-        while (i + 1 < 10 && j - 1 >= 0) {
-            if (getPiece(i + 1, j - 1) == null) {
-                moves.add(Integer.toString(i + 1) + Integer.toString(j - 1));
-            } else {
-                break;
+    public int generateMoves(int[] moves) {
+        return MoveGenerator.generate(position, player1, jumper, jumpedPieces(), moves);
+    }
+
+    /**
+     * Writes all legal turns for the current player into a buffer, each
+     * capture sequence as a whole; see MoveGenerator.generateTurns. The
+     * hops of a turn are played one after another with makeMove.
+     *
+     * @param turns A buffer with at least MoveGenerator.MAX_TURN_INTS entries from start
+     * @param start The index of the first entry to write
+     * @return The index after the last turn written
+     */
+    int generateTurns(int[] turns, int start) {
+        return MoveGenerator.generateTurns(position, player1, jumper, jumpedPieces(), turns, start);
+    }
+
+    /**
+     * Returns the squares the current player can land on when capturing is
+     * mandatory.
+     *
+     * @return A bitboard mask of landing squares, 0 if there is no capture
+     */
+    public long getPossibleSquares() {
+        int count = generateMoves(moveBuffer);
+        long squares = 0L;
+        for (int k = 0; k < count; k++) {
+            if (Move.isCapture(moveBuffer[k])) {
+                squares |= 1L << Move.to(moveBuffer[k]);
             }
-            j -= 1;
-            i += 1;
         }
-        i = piece.getRow();
-        j = piece.getCol();
-        while (i - 1 >= 0 && j + 1 < 10) {
-            if (getPiece(i - 1, j + 1) == null) {
-                moves.add(Integer.toString(i - 1) + Integer.toString(j + 1));
-            } else {
-                break;
-            }
-            j += 1;
-            i -= 1;
+        return squares;
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree below the current position.
+     *
+     * Every turn is one level of the tree: a quiet move or a whole capture
+     * sequence, with sequences that capture the same pieces and end on the
+     * same square counted once (see generateTurns), as is usual for
+     * draughts perft.
+     *
+     * @param depth The number of turns to look ahead
+     * @return The number of move sequences of that length
+     */
+    public long perft(int depth) {
+        if (depth == 0) {
+            return 1;
         }
-        i = piece.getRow();
-        j = piece.getCol();
-        while (i - 1 >= 0 && j - 1 >= 0) {
-            if (getPiece(i - 1, j - 1) == null) {
-                moves.add(Integer.toString(i - 1) + Integer.toString(j - 1));
-            } else {
-                break;
+        return perft(depth, new int[depth + 1][MoveGenerator.MAX_TURN_INTS]);
+    }
+
+    private long perft(int depth, int[][] buffers) {
+        int[] turns = buffers[depth];
+        int end = generateTurns(turns, 0);
+        long nodes = 0;
+        for (int offset = 0; offset < end; offset += turns[offset] + 1) {
+            if (depth == 1) {
+                nodes++;
+                continue;
             }
-            j -= 1;
-            i -= 1;
+            makeTurn(turns, offset);
+            nodes += perft(depth - 1, buffers);
+            unmakeTurn(turns, offset);
         }
-        return moves;
+        return nodes;
     }
 
     /**
-     * Returns all possible moves for a soldier piece.
+     * Runs perft separately below each legal turn of the current position.
      *
-     * @param piece The piece to move
-     * @return A list of all possible moves
+     * @param depth The number of turns to look ahead, including the root turn
+     * @return The leaf count for each root turn, keyed by its hops written
+     *         with Move.toString; empty if depth is less than 1
      */
-    private List<String> getPossibleSoldierMoves(Piece piece){
-        List<String> moves = new ArrayList<>();
-        int i = piece.getRow();
-        int j = piece.getCol();
-        if (piece.getColor() == 1) {
-            if (i - 1 >= 0 && j + 1 < 10) {
-                if (getPiece(i - 1, j + 1) == null) {
-                    moves.add(Integer.toString(i - 1) + Integer.toString(j + 1));
-                }
-            }
-            if (i - 1 >= 0 && j - 1 >= 0) {
-                if (getPiece(i - 1, j - 1) == null) {
-                    moves.add(Integer.toString(i - 1) + Integer.toString(j - 1));
-                }
-            }
-        } else {
-            if (i + 1 < 10 && j + 1 < 10) {
-                if (getPiece(i + 1, j + 1) == null) {
-                    moves.add(Integer.toString(i + 1) + Integer.toString(j + 1));
-                }
-            }
-            if (i + 1 < 10 && j - 1 >= 0) {
-                if (getPiece(i + 1, j - 1) == null) {
-                    moves.add(Integer.toString(i + 1) + Integer.toString(j - 1));
-                }
+    public Map<String, Long> divide(int depth) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (depth < 1) {
+            return counts;
+        }
+        int[] turns = new int[MoveGenerator.MAX_TURN_INTS];
+        int end = generateTurns(turns, 0);
+        for (int offset = 0; offset < end; offset += turns[offset] + 1) {
+            StringBuilder name = new StringBuilder(Move.toString(turns[offset + 1]));
+            for (int k = 2; k <= turns[offset]; k++) {
+                int to = Move.to(turns[offset + k]);
+                name.append('x').append(BitBoard.row(to)).append(',').append(BitBoard.col(to));
             }
+            makeTurn(turns, offset);
+            counts.put(name.toString(), perft(depth - 1));
+            unmakeTurn(turns, offset);
         }
-        return moves;
+        return counts;
     }
 
     /**
-     * Returns all possible moves for movables piece (black).
-     * @return A list of all possible moves
+     * Plays the hops of a turn written by generateTurns.
      */
-    private HashMap<Piece, List<String>> getAIMoves() {
-        // get all possible moves for the AI (Black)
-        HashMap<Piece, List<String>> moves = new HashMap<Piece, List<String>>();
-        for (int i = 0; i < 10; i++) {
-            for (int j = 0; j < 10; j++) {
-                Piece piece = getPiece(i, j);
-                if (piece != null && piece.getColor() == 2) {
-                    if (piece instanceof KingPiece) {
-                        List<String> kingMoves = getPossibleKingMoves(piece);
-                        if (!kingMoves.isEmpty()) {
-                            moves.put(piece, kingMoves);
-                        }
-                    } else {
-                        List<String> soldierMoves = getPossibleSoldierMoves(piece);
-                        if (!soldierMoves.isEmpty()) {
-                            moves.put(piece, soldierMoves);
-                        }
-                    }
-                }
-            }
+    private void makeTurn(int[] turns, int offset) {
+        for (int k = 1; k <= turns[offset]; k++) {
+            makeMove(turns[offset + k]);
+        }
+    }
+
+    /**
+     * Takes back the hops of a turn played with makeTurn.
+     */
+    private void unmakeTurn(int[] turns, int offset) {
+        for (int k = 0; k < turns[offset]; k++) {
+            unmakeMove();
         }
-        return moves;
     }
 
     /**
@@ -665,256 +1007,246 @@ class Checkers {
      */
     public boolean randomAI() {
         if (!player1) {
-            if (currentPlayerCanJumpPiece()){
-                if (nextJump.values().isEmpty()) {
-                    List<Piece> pieces = new ArrayList<>(possibleJumps.keySet());
-                    if (pieces.isEmpty()) {
-                        numPlayer2 = 0;
-                        return false;
-                    }
-                    Random rand = new Random();
-                    Piece piece = pieces.get(rand.nextInt(pieces.size()));
-                    List<String> positions = getPossiblePositions(piece);
-                    if (positions.isEmpty()) {
-                        return false;
-                    }
-                    String position = positions.get(rand.nextInt(positions.size()));
-                    int row = Integer.parseInt(position.substring(0, 1));
-                    int col = Integer.parseInt(position.substring(1));
-                    return movePiece(piece.getRow(), piece.getCol(), row, col);
-                } else {
-                    List<Piece> pieces = new ArrayList<>(nextJump.keySet());
-                    if (pieces.isEmpty()) {
-                        numPlayer2 = 0;
-                        return false;
-                    }
-                    Random rand = new Random();
-                    Piece piece = pieces.get(rand.nextInt(pieces.size()));
-                    List<String> positions = getPossiblePositions(piece);
-                    if (positions.isEmpty()) {
-                        return false;
-                    }
-                    String position = positions.get(rand.nextInt(positions.size()));
-                    int row = Integer.parseInt(position.substring(0, 1));
-                    int col = Integer.parseInt(position.substring(1));
-                    return movePiece(piece.getRow(), piece.getCol(), row, col);
-                }
-            } else {
-                HashMap<Piece, List<String>> moves = getAIMoves();
-                List<Piece> pieces = new ArrayList<>(moves.keySet());
-                if (pieces.isEmpty()) {
-                    numPlayer2 = 0;
-                    return false;
-                }
-                Random rand = new Random();
-                Piece piece = pieces.get(rand.nextInt(pieces.size()));
-                List<String> positions = moves.get(piece);
-                if (positions.isEmpty()) {
-                    return false;
-                }
-                String position = positions.get(rand.nextInt(positions.size()));
-                int row = Integer.parseInt(position.substring(0, 1));
-                int col = Integer.parseInt(position.substring(1));
-                return movePiece(piece.getRow(), piece.getCol(), row, col);
+            long start = Metrics.start();
+            int move = randomMove(random);
+            Metrics.stop(Metrics.Timer.AI_MOVE, start);
+            if (move == Move.NONE) {
+                // the game is lost, see getResult
+                return false;
             }
+            int from = Move.from(move);
+            int to = Move.to(move);
+            return movePiece(BitBoard.row(from), BitBoard.col(from), BitBoard.row(to), BitBoard.col(to));
         }
         return false;
     }
 
-    public boolean saveGame() {
-        try {
-            // Create a new file
-            File file = new File("game_state.txt");
-            file.createNewFile();
-
-            // Open a FileWriter to write to the file
-            FileWriter fw = new FileWriter(file);
-            BufferedWriter bw = new BufferedWriter(fw);
-
-            // Write the board state
-            for (int i = 0; i < 10; i++) {
-                for (int j = 0; j < 10; j++) {
-                    if (board[i][j] == null) {
-                        bw.write("\n");
-                    } else {
-                        bw.write(i + "," + j + "," + board[i][j].getColor() + "," + (board[i][j] instanceof SoldierPiece ? 1 : 2) + "\n");
-                    }
-                }
+    /**
+     * Checks whether a move is legal for the current player.
+     *
+     * @param move The move
+     * @return True if the move is among the legal moves
+     */
+    boolean isLegal(int move) {
+        int count = generateMoves(moveBuffer);
+        for (int k = 0; k < count; k++) {
+            if (moveBuffer[k] == move) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            // Write other game state variables
-            bw.write("numPlayer1\n" + numPlayer1 + "\n");
-            bw.write("numPlayer2\n" + numPlayer2 + "\n");
-            bw.write("player1\n" + player1 + "\n");
+    /**
+     * Picks a legal move for the current player uniformly at random.
+     *
+     * @param random The random number generator to use
+     * @return The move, or Move.NONE if the player has no legal move
+     */
+    int randomMove(RandomGenerator random) {
+        int count = generateMoves(moveBuffer);
+        return count == 0 ? Move.NONE : moveBuffer[random.nextInt(count)];
+    }
 
-            bw.write("deletedPieces\n" + deletedPieces.size() + "\n");
-            for (Piece piece : deletedPieces) {
-                bw.write(piece.getRow() + "," + piece.getCol() + "," + piece.getColor() + "," + (piece instanceof SoldierPiece ? 1 : 2) + "\n");
-            }
-            int size = 0;
-            if (!possibleJumps.isEmpty()){
-                for (Map.Entry<Piece, HashMap<Piece, List<String>>> entry : possibleJumps.entrySet()) {
-                    for (Map.Entry<Piece, List<String>> innerEntry : entry.getValue().entrySet()) {
-                        size += innerEntry.getValue().size();
-                    }
-                }
-            }
-            bw.write("possibleJumps\n" + (possibleJumps.isEmpty() ? 0 : size) + "\n");
-            if (!possibleJumps.isEmpty()){
-                for (Map.Entry<Piece, HashMap<Piece, List<String>>> entry : possibleJumps.entrySet()) {
-                    for (Map.Entry<Piece, List<String>> innerEntry : entry.getValue().entrySet()) {
-                        for (String position : innerEntry.getValue()) {
-                            bw.write(entry.getKey().getRow() + "," + entry.getKey().getCol() + "," + entry.getKey().getColor() + "," + (entry.getKey() instanceof SoldierPiece ? 1 : 2) + "," + innerEntry.getKey().getRow() + "," + innerEntry.getKey().getCol() + "," + innerEntry.getKey().getColor() + "," + (innerEntry.getKey() instanceof SoldierPiece ? 1 : 2) + "," + position + "\n");
-                        }
-                    }
-                }
-            }
-            size = 0;
-            if (!nextJump.isEmpty()){
-                for (Map.Entry<Piece, HashMap<Piece, List<String>>> entry : nextJump.entrySet()) {
-                    for (Map.Entry<Piece, List<String>> innerEntry : entry.getValue().entrySet()) {
-                        size += innerEntry.getValue().size();
-                    }
-                }
-            }
-            bw.write("nextJump\n" + (nextJump.isEmpty() ? 0 : size) + "\n");
-            if (!nextJump.isEmpty()){
-                for (Map.Entry<Piece, HashMap<Piece, List<String>>> entry : nextJump.entrySet()) {
-                    for (Map.Entry<Piece, List<String>> innerEntry : entry.getValue().entrySet()) {
-                        for (String position : innerEntry.getValue()) {
-                            bw.write(entry.getKey().getRow() + "," + entry.getKey().getCol() + "," + entry.getKey().getColor() + "," + (entry.getKey() instanceof SoldierPiece ? 1 : 2) + "," + innerEntry.getKey().getRow() + "," + innerEntry.getKey().getCol() + "," + innerEntry.getKey().getColor() + "," + (innerEntry.getKey() instanceof SoldierPiece ? 1 : 2) + "," + position + "\n");
-                        }
-                    }
-                }
-            }
+    /**
+     * Makes the search engine's best move for the current player.
+     *
+     * @param engine The engine to ask for a move
+     * @return True if the move is successful, false otherwise
+     */
+    public boolean engineAI(Engine engine) {
+        long start = Metrics.start();
+        int move = engine.findBestMove(this);
+        Metrics.stop(Metrics.Timer.AI_MOVE, start);
+        if (move == Move.NONE) {
+            return false;
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        return movePiece(BitBoard.row(from), BitBoard.col(from), BitBoard.row(to), BitBoard.col(to));
+    }
 
-            // Close the BufferedWriter
-            bw.close();
-            fw.close();
+    /**
+     * Saves the game to SAVE_FILE, see saveGame(Path).
+     *
+     * @return True if the game was saved, false otherwise
+     */
+    public boolean saveGame() {
+        return saveGame(Path.of(SAVE_FILE));
+    }
 
+    /**
+     * Saves the position and the whole move history in the binary save
+     * format, so that undo keeps working after the game is loaded again.
+     *
+     * @param file The file to write
+     * @return True if the game was saved, false otherwise
+     */
+    boolean saveGame(Path file) {
+        long start = Metrics.start();
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize());
+        write(buffer);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
             return true;
         } catch (IOException e) {
             e.printStackTrace();
             return false;
+        } finally {
+            Metrics.stop(Metrics.Timer.SAVE, start);
         }
     }
 
+    /**
+     * Loads the game from SAVE_FILE, see loadGame(Path).
+     *
+     * @return True if the game was loaded, false otherwise
+     */
     public boolean loadGame() {
+        return loadGame(Path.of(SAVE_FILE));
+    }
+
+    /**
+     * Loads a game written by saveGame. The file is memory-mapped rather
+     * than read through a stream. The game is left unchanged if the file
+     * cannot be read or is not a valid save.
+     *
+     * @param file The file to read
+     * @return True if the game was loaded, false otherwise
+     */
+    boolean loadGame(Path file) {
+        long start = Metrics.start();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            copyFrom(read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+            currentPlayerCanJumpPiece();
+            journalSnapshot();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            Metrics.stop(Metrics.Timer.LOAD, start);
+        }
+    }
+
+    /**
+     * @return The number of bytes write needs for this game
+     */
+    int encodedSize() {
+        return SAVE_HEADER_BYTES + historySize * Long.BYTES;
+    }
+
+    /**
+     * Writes the game in the binary save format.
+     *
+     * @param out The buffer to write to, with at least encodedSize bytes left
+     */
+    void write(ByteBuffer out) {
+        out.putInt(SAVE_MAGIC);
+        out.put(SAVE_VERSION);
+        out.putLong(position.player1Pieces);
+        out.putLong(position.player2Pieces);
+        out.putLong(position.kings);
+        out.put((byte) (player1 ? 1 : 0));
+        out.put((byte) (jumper + 1));
+        out.putInt(historySize);
+        for (int k = 0; k < historySize; k++) {
+            out.putLong(((long) historyStates[k] << 32) | (historyMoves[k] & 0xFFFFFFFFL));
+        }
+    }
+
+    /**
+     * Reads a game written by write. The history is checked by taking every
+     * move back, and hashes and jump maps are rebuilt rather than stored.
+     *
+     * @param in The buffer to read from
+     * @return The game
+     * @throws IOException if the buffer does not hold a valid game
+     */
+    static Checkers read(ByteBuffer in) throws IOException {
         try {
-            // Open a FileReader to read from the file
-            File file = new File("game_state.txt");
-            FileReader fr = new FileReader(file);
-            BufferedReader br = new BufferedReader(fr);
-
-            // Read the board state
-            board = new Piece[10][10];
-            String line;
-            for (int i = 0; i < 10; i++) {
-                for (int j = 0; j < 10; j++) {
-                    line = br.readLine();
-                    if (line.isEmpty()) {
-                        board[i][j] = null;
-                    } else {
-                        String[] parts = line.split(",");
-                        int row = Integer.parseInt(parts[0]);
-                        int col = Integer.parseInt(parts[1]);
-                        int color = Integer.parseInt(parts[2]);
-                        int type = Integer.parseInt(parts[3]);
-                        if (type == 1) {
-                            board[i][j] = new SoldierPiece(row, col, color);
-                        } else {
-                            board[i][j] = new KingPiece(row, col, color);
-                        }
-                    }
-                }
+            if (in.getInt() != SAVE_MAGIC) {
+                throw new IOException("Not a saved game");
+            }
+            int version = in.get();
+            if (version != SAVE_VERSION) {
+                throw new IOException("Unsupported save version " + version);
+            }
+            Checkers game = new Checkers();
+            BitBoard position = new BitBoard();
+            position.player1Pieces = in.getLong();
+            position.player2Pieces = in.getLong();
+            position.kings = in.getLong();
+            long pieces = position.player1Pieces | position.player2Pieces;
+            if ((position.player1Pieces & position.player2Pieces) != 0 || (pieces & ~BitBoard.PLAYABLE) != 0
+                    || (position.kings & ~pieces) != 0) {
+                throw new IOException("Invalid position");
+            }
+            game.position = position;
+            game.player1 = in.get() != 0;
+            game.jumper = in.get() - 1;
+            int size = in.getInt();
+            if ((game.jumper != BitBoard.NONE && !BitBoard.isPlayable(game.jumper))
+                    || size < 0 || size > in.remaining() / Long.BYTES) {
+                throw new IOException("Invalid game state");
+            }
+            game.historyMoves = new int[Math.max(64, size)];
+            game.historyStates = new int[game.historyMoves.length];
+            game.historyHashes = new long[game.historyMoves.length];
+            for (int k = 0; k < size; k++) {
+                long record = in.getLong();
+                game.historyMoves[k] = (int) record;
+                game.historyStates[k] = (int) (record >>> 32);
             }
 
-            // Read other game state variables
-            line = br.readLine();
-            numPlayer1 = Integer.parseInt(br.readLine());
-            line = br.readLine();
-            numPlayer2 = Integer.parseInt(br.readLine());
-            line = br.readLine();
-            player1 = Boolean.parseBoolean(br.readLine());
-            line = br.readLine();
-            int deletedPiecesSize = Integer.parseInt(br.readLine());
-            deletedPieces = new Stack<>();
-            for (int i = 0; i < deletedPiecesSize; i++) {
-                line = br.readLine();
-                String[] parts = line.split(",");
-                int row = Integer.parseInt(parts[0]);
-                int col = Integer.parseInt(parts[1]);
-                int color = Integer.parseInt(parts[2]);
-                int type = Integer.parseInt(parts[3]);
-                if (type == 1) {
-                    deletedPieces.add(new SoldierPiece(row, col, color));
-                } else {
-                    deletedPieces.add(new KingPiece(row, col, color));
+            // take the moves back to find the starting position, then replay
+            // them to rebuild the hashes; each state must agree with the move
+            // it comes with and with the state after it
+            game.historySize = size;
+            for (int k = size - 1; k >= 0; k--) {
+                int move = game.historyMoves[k];
+                int state = game.historyStates[k];
+                int color = (state & STATE_PLAYER1) != 0 ? 1 : 2;
+                int captured = Move.captured(move);
+                if (!BitBoard.isPlayable(Move.from(move)) || !BitBoard.isPlayable(Move.to(move))
+                        || position.colorAt(Move.to(move)) != color || position.colorAt(Move.from(move)) != 0
+                        || (captured != BitBoard.NONE && (!BitBoard.isPlayable(captured)
+                        || position.colorAt(captured) != 0))) {
+                    throw new IOException("Invalid move history");
                 }
-            }
-            line = br.readLine();
-            possibleJumps = new HashMap<>();
-            int possibleJumpsSize = Integer.parseInt(br.readLine());
-            for (int i = 0; i < possibleJumpsSize; i++) {
-                line = br.readLine();
-                String[] parts = line.split(",");
-                int row = Integer.parseInt(parts[0]);
-                int col = Integer.parseInt(parts[1]);
-                int color = Integer.parseInt(parts[2]);
-                int type = Integer.parseInt(parts[3]);
-                int row2 = Integer.parseInt(parts[4]);
-                int col2 = Integer.parseInt(parts[5]);
-                int color2 = Integer.parseInt(parts[6]);
-                int type2 = Integer.parseInt(parts[7]);
-                String position = parts[8];
-                if (board[row][col] != null) {
-                    if (!possibleJumps.containsKey(getPiece(row, col))) {
-                        possibleJumps.put(getPiece(row, col), new HashMap<>());
-                    }
-                    if (board[row2][col2] != null) {
-                        if (!possibleJumps.get(getPiece(row, col)).containsKey(getPiece(row2, col2))) {
-                            possibleJumps.get(getPiece(row, col)).put(getPiece(row2, col2), new ArrayList<>());
-                        }
-                        possibleJumps.get(getPiece(row, col)).get(getPiece(row2, col2)).add(position);
-                    }
+                // a piece still capturing after the move keeps the turn
+                boolean keepsTurn = game.jumper != BitBoard.NONE;
+                int jumper = ((state >>> 12) & 0x3F) - 1;
+                if ((jumper != BitBoard.NONE && jumper != Move.from(move))
+                        || (keepsTurn && game.jumper != Move.to(move))
+                        || game.player1 != (keepsTurn == (color == 1))
+                        || ((state & STATE_CAPTURED_KING) != 0 && captured == BitBoard.NONE)
+                        || state >>> STATE_KING_MOVES_SHIFT > 0x7F) {
+                    throw new IOException("Invalid game state in move history");
                 }
+                game.unmakeMove();
             }
-            line = br.readLine();
-            // Read nextJump data
-            nextJump = new HashMap<>();
-            int nextJumpSize = Integer.parseInt(br.readLine());
-            for (int i = 0; i < nextJumpSize; i++) {
-                line = br.readLine();
-                String[] parts = line.split(",");
-                int row = Integer.parseInt(parts[0]);
-                int col = Integer.parseInt(parts[1]);
-                int color = Integer.parseInt(parts[2]);
-                int type = Integer.parseInt(parts[3]);
-                int row2 = Integer.parseInt(parts[4]);
-                int col2 = Integer.parseInt(parts[5]);
-                int color2 = Integer.parseInt(parts[6]);
-                int type2 = Integer.parseInt(parts[7]);
-                String position = parts[8];
-                if (board[row][col] != null) {
-                    if (!nextJump.containsKey(getPiece(row, col))) {
-                        nextJump.put(getPiece(row, col), new HashMap<>());
-                    }
-                    if (board[row2][col2] != null) {
-                        if (!nextJump.get(getPiece(row, col)).containsKey(getPiece(row2, col2))) {
-                            nextJump.get(getPiece(row, col)).put(getPiece(row2, col2), new ArrayList<>());
-                        }
-                        nextJump.get(getPiece(row, col)).get(getPiece(row2, col2)).add(position);
-                    }
+            // the counts in the states are rebuilt by the replay
+            game.numPlayer1 = Long.bitCount(position.player1Pieces);
+            game.numPlayer2 = Long.bitCount(position.player2Pieces);
+            game.hash = Zobrist.hash(position, game.player1, game.jumper);
+            for (int k = 0; k < size; k++) {
+                int move = game.historyMoves[k];
+                if (Move.isCapture(move)) {
+                    int color = (game.historyStates[k] & STATE_PLAYER1) != 0 ? 2 : 1;
+                    game.deletedPieces.add(PIECES[Move.captured(move) * 4 + (color - 1) * 2
+                            + ((game.historyStates[k] & STATE_CAPTURED_KING) != 0 ? 1 : 0)]);
                 }
+                game.makeMove(move);
             }
-            // Close the BufferedReader
-            br.close();
-            fr.close();
-
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            game.rebuildRepetitions();
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated save", e);
         }
     }
 }
@@ -0,0 +1,160 @@
+package org.cis1200.checkers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of how many positions per second each evaluator scores.
+ *
+ * Positions are sampled from random games. The incremental rate is that of
+ * the search: the evaluator follows each game from its start, making every
+ * legal move of a position, evaluating and taking it back before moving
+ * on. The full rate resets the evaluator from every position after a move
+ * instead. Each call scores one position, walking through the samples and
+ * starting over at the end.
+ *
+ * Without a weights file a random network with 256 hidden neurons is
+ * timed; pass one with -p weights=file:
+ *
+ *     mvn -B -Pjmh package -DskipTests
+ *     java -jar target/benchmarks.jar EvaluatorBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+    private static final int SAMPLES = 2048;
+
+    @Param({"handcrafted", "nnue"})
+    public String kind;
+
+    @Param({""})
+    public String weights;
+
+    private Evaluator evaluator;
+    private BitBoard[] positions;
+    private int[][] moves;
+    // the move played from each position
+    private int[] played;
+    // the positions a game starts from
+    private final BitSet starts = new BitSet();
+    private BitBoard[] children;
+    // whether player 1 is to move in each child, and where the children of
+    // each position start
+    private boolean[] childMovers;
+    private int[] firstChild;
+
+    // where incremental and full are in the samples
+    private int position;
+    private int move;
+    private int child;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (kind.equals("handcrafted")) {
+            evaluator = new HandcraftedEvaluator();
+        } else {
+            NnueNetwork network = weights.isEmpty() ? NnueNetwork.random(256, 1) : NnueNetwork.load(Path.of(weights));
+            evaluator = network.newEvaluator();
+        }
+
+        List<BitBoard> positionList = new ArrayList<>();
+        List<int[]> moveList = new ArrayList<>();
+        List<Integer> playedList = new ArrayList<>();
+        List<BitBoard> childList = new ArrayList<>();
+        List<Boolean> moverList = new ArrayList<>();
+        List<Integer> firstList = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(7);
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        while (positionList.size() < SAMPLES) {
+            Checkers game = new Checkers();
+            starts.set(positionList.size());
+            for (int ply = 0; ply < 150 && positionList.size() < SAMPLES; ply++) {
+                int count = game.generateMoves(list);
+                if (count == 0) {
+                    break;
+                }
+                positionList.add(game.getPosition().copy());
+                moveList.add(Arrays.copyOf(list, count));
+                firstList.add(childList.size());
+                for (int k = 0; k < count; k++) {
+                    game.makeMove(list[k]);
+                    childList.add(game.getPosition().copy());
+                    // a hop that does not end the turn leaves the same side to move
+                    moverList.add(game.player1);
+                    game.unmakeMove();
+                }
+                int next = list[random.nextInt(count)];
+                playedList.add(next);
+                game.makeMove(next);
+            }
+        }
+        positions = positionList.toArray(new BitBoard[0]);
+        moves = moveList.toArray(new int[0][]);
+        played = playedList.stream().mapToInt(Integer::intValue).toArray();
+        children = childList.toArray(new BitBoard[0]);
+        childMovers = new boolean[moverList.size()];
+        for (int k = 0; k < childMovers.length; k++) {
+            childMovers[k] = moverList.get(k);
+        }
+        firstChild = firstList.stream().mapToInt(Integer::intValue).toArray();
+        evaluator.reset(positions[0]);
+    }
+
+    /**
+     * Scores the next move of the sample games incrementally, as the search
+     * does.
+     */
+    @Benchmark
+    public int incremental() {
+        BitBoard board = positions[position];
+        int next = moves[position][move];
+        evaluator.makeMove(board, next);
+        int score = evaluator.evaluate(childMovers[firstChild[position] + move]);
+        evaluator.unmakeMove(board, next);
+        if (++move == moves[position].length) {
+            // go on with the game to its next sample position
+            evaluator.makeMove(board, played[position]);
+            move = 0;
+            position = (position + 1) % positions.length;
+            if (starts.get(position)) {
+                evaluator.reset(positions[position]);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Scores the next position after a move from scratch.
+     */
+    @Benchmark
+    public int full() {
+        BitBoard board = children[child];
+        boolean player1 = childMovers[child];
+        child = (child + 1) % children.length;
+        evaluator.reset(board);
+        return evaluator.evaluate(player1);
+    }
+}
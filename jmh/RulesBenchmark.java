@@ -0,0 +1,223 @@
+package org.cis1200.checkers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmark of the public game API used by the GUI: moving, jump
+ * detection, board cloning, undo, saving and loading, and the random AI.
+ *
+ * Each operation runs on a corpus of positions, all with player 1 to move:
+ * the opening, a crowded middlegame and a king endgame. An operation that
+ * changes the game runs on a batch of fresh copies of the position,
+ * prepared before each invocation outside the timed region, so every call
+ * sees the same position.
+ *
+ * Build and run with the jmh profile; the gc profiler reports the bytes
+ * allocated per operation (gc.alloc.rate.norm). For the batched operations
+ * that figure also counts preparing their copies: copy gives the share of
+ * a fresh copy, and copy plus movePiece that of a copy after a move.
+ *
+ *     mvn -B -Pjmh package -DskipTests
+ *     java -jar target/benchmarks.jar RulesBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+    private static final Map<String, String> POSITIONS = Map.of(
+            "opening", "W:W31-50:B1-20",
+            "middlegame", "W:W26,29,33-35,38-41,43,45-47,49,50:B2-4,6,9,10,12,14,20,21,25",
+            "kings", "W:WK1,K50,33:BK10,K45,18");
+    private static final int BATCH = 256;
+
+    /**
+     * A corpus position, its first legal move and a save of it.
+     */
+    @State(Scope.Thread)
+    public static class Corpus {
+        @Param({"opening", "middlegame", "kings"})
+        public String position;
+
+        Checkers game;
+        int move;
+        Path saveFile;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            game = positionGame(position);
+            move = firstMove(game);
+            saveFile = Files.createTempFile("benchmark", ".save");
+            if (!game.saveGame(saveFile)) {
+                throw new IllegalStateException("cannot save to " + saveFile);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(saveFile);
+        }
+    }
+
+    /**
+     * The king endgame of the corpus and a king of the side to move; the
+     * other positions have no king to ask about.
+     */
+    @State(Scope.Thread)
+    public static class KingCorpus {
+        @Param({"kings"})
+        public String kingPosition;
+
+        Checkers game;
+        Piece king;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            game = positionGame(kingPosition);
+            BitBoard position = game.getPosition();
+            long kings = position.pieces(game.player1 ? 1 : 2) & position.kings;
+            if (kings == 0) {
+                throw new IllegalStateException(kingPosition + " has no king to move");
+            }
+            int square = Long.numberOfTrailingZeros(kings);
+            king = game.getPiece(BitBoard.row(square), BitBoard.col(square));
+        }
+    }
+
+    /**
+     * Fresh copies of the corpus position, one per call.
+     */
+    @State(Scope.Thread)
+    public static class Copies {
+        final Checkers[] games = new Checkers[BATCH];
+
+        @Setup(Level.Invocation)
+        public void setUp(Corpus corpus) {
+            for (int k = 0; k < BATCH; k++) {
+                games[k] = new Checkers(corpus.game);
+            }
+        }
+    }
+
+    /**
+     * Copies of the corpus position after the first legal move, with its
+     * whole capture sequence, so player 2 is to move and there is a move
+     * to undo.
+     */
+    @State(Scope.Thread)
+    public static class Played {
+        final Checkers[] games = new Checkers[BATCH];
+
+        @Setup(Level.Invocation)
+        public void setUp(Corpus corpus) {
+            for (int k = 0; k < BATCH; k++) {
+                Checkers game = new Checkers(corpus.game);
+                while (game.player1) {
+                    int move = firstMove(game);
+                    if (move == Move.NONE) {
+                        throw new IllegalStateException(corpus.position + " has no move to play");
+                    }
+                    game.movePiece(BitBoard.row(Move.from(move)), BitBoard.col(Move.from(move)),
+                            BitBoard.row(Move.to(move)), BitBoard.col(Move.to(move)));
+                }
+                games[k] = game;
+            }
+        }
+    }
+
+    @Benchmark
+    public Object copy(Corpus corpus) {
+        return new Checkers(corpus.game);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void movePiece(Corpus corpus, Copies copies, Blackhole blackhole) {
+        int move = corpus.move;
+        for (Checkers game : copies.games) {
+            blackhole.consume(game.movePiece(BitBoard.row(Move.from(move)), BitBoard.col(Move.from(move)),
+                    BitBoard.row(Move.to(move)), BitBoard.col(Move.to(move))));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void currentPlayerCanJumpPiece(Copies copies, Blackhole blackhole) {
+        // the jumps are cached once found, so each call gets its own copy
+        for (Checkers game : copies.games) {
+            blackhole.consume(game.currentPlayerCanJumpPiece());
+        }
+    }
+
+    @Benchmark
+    public Object canJumpPieceKing(KingCorpus corpus) {
+        return corpus.game.canJumpPieceKing(corpus.king);
+    }
+
+    @Benchmark
+    public Object deepCloneBoard(Corpus corpus) {
+        return corpus.game.deepCloneBoard();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void undo(Played played, Blackhole blackhole) {
+        for (Checkers game : played.games) {
+            game.undo();
+            blackhole.consume(game);
+        }
+    }
+
+    @Benchmark
+    public boolean saveGame(Corpus corpus) {
+        return corpus.game.saveGame(corpus.saveFile);
+    }
+
+    @Benchmark
+    public boolean loadGame(Corpus corpus) {
+        return corpus.game.loadGame(corpus.saveFile);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void randomAI(Played played, Blackhole blackhole) {
+        for (Checkers game : played.games) {
+            blackhole.consume(game.randomAI());
+        }
+    }
+
+    private static Checkers positionGame(String name) {
+        Checkers game = new Checkers();
+        game.setPosition(POSITIONS.get(name));
+        return game;
+    }
+
+    /**
+     * @return The first legal move of the side to move, or Move.NONE
+     */
+    private static int firstMove(Checkers game) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        return game.generateMoves(moves) > 0 ? moves[0] : Move.NONE;
+    }
+}